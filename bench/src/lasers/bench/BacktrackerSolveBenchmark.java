@@ -0,0 +1,58 @@
+package lasers.bench;
+
+import lasers.backtracking.Backtracker;
+import lasers.backtracking.Configuration;
+import lasers.model.SafeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end solves of the safes in tests/ with the Backtracker, set up
+ * the way SafeSolver runs it by default.  The search is the copying
+ * one, the recursive in-place one or the iterative one with an explicit
+ * stack, so the last two show what the recursion costs.  20x36safe-medium
+ * is left out, since the backtracker does not finish it in a reasonable
+ * time.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BacktrackerSolveBenchmark {
+
+    @Param({"4x4safe", "7x7safe", "8x8safe", "10x8safe", "14x14safe",
+            "10x18safe-easy", "10x18safe-medium", "14x24safe-medium", "14x24safe-hard",
+            "20x36safe-easy", "20x36safe-hard"})
+    public String safe;
+
+    @Param({"copy", "inplace", "iterative"})
+    public String search;
+
+    @Benchmark
+    public Optional<Configuration> solve() throws FileNotFoundException {
+        SafeConfig init = new SafeConfig(Safes.path(this.safe));
+        Backtracker bt = new Backtracker(false);
+        if (this.search.equals("inplace")) {
+            return bt.solveInPlace(init);
+        } else if (this.search.equals("iterative")) {
+            return bt.solveIterative(init);
+        }
+        return bt.solve(init);
+    }
+}
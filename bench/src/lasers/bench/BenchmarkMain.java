@@ -0,0 +1,31 @@
+package lasers.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This is the main class for the benchmarks.  It runs every benchmark,
+ * or those matching the regular expression given as the argument, with
+ * the GC profiler on so each result also shows the bytes allocated per
+ * operation and the collections it caused.  The results are written to
+ * bench/results.json as well, to compare one release with the next.
+ *
+ * It has to be run from the project directory, where tests/ is.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "lasers\\.bench\\..*")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("bench/results.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,104 @@
+package lasers.bench;
+
+import lasers.model.LasersModel;
+import lasers.model.SafeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the LasersModel operations behind the PTUI and GUI on
+ * the biggest safes.  Adding a laser and removing it again leaves the
+ * board as it was, so the two are measured as one operation on an
+ * empty board and on a board that already holds the rest of the
+ * solution.  Verify is measured on the solved board, where it has to
+ * check every cell.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LasersModelBenchmark {
+
+    @Param({"20x36safe-medium", "20x36safe-hard"})
+    public String safe;
+
+    private LasersModel empty;
+    private LasersModel solved;
+    /** the lasers of the solution, as rows and columns */
+    private int[] rows;
+    private int[] cols;
+    private int next;
+
+    @Setup
+    public void setup() throws FileNotFoundException {
+        SafeConfig solution = Safes.solve(new SafeConfig(Safes.path(this.safe)));
+        int count = 0;
+        int[] rows = new int[solution.getRowDim() * solution.getColDim()];
+        int[] cols = new int[rows.length];
+        for (int r = 0; r < solution.getRowDim(); r++) {
+            for (int c = 0; c < solution.getColDim(); c++) {
+                if (solution.hasLaser(r, c)) {
+                    rows[count] = r;
+                    cols[count++] = c;
+                }
+            }
+        }
+        this.rows = Arrays.copyOf(rows, count);
+        this.cols = Arrays.copyOf(cols, count);
+
+        this.empty = new LasersModel(Safes.path(this.safe));
+        this.empty.makeBoard();
+        this.solved = new LasersModel(Safes.path(this.safe));
+        this.solved.makeBoard();
+        for (int i = 0; i < count; i++) {
+            this.solved.add(this.rows[i], this.cols[i]);
+        }
+    }
+
+    @Benchmark
+    public String[][] addRemoveEmpty() {
+        int i = nextLaser();
+        this.empty.add(this.rows[i], this.cols[i]);
+        this.empty.remove(this.rows[i], this.cols[i]);
+        return this.empty.getBoard();
+    }
+
+    @Benchmark
+    public String[][] removeAddSolved() {
+        int i = nextLaser();
+        this.solved.remove(this.rows[i], this.cols[i]);
+        this.solved.add(this.rows[i], this.cols[i]);
+        return this.solved.getBoard();
+    }
+
+    @Benchmark
+    public String[][] verifySolved() {
+        this.solved.verify();
+        return this.solved.getBoard();
+    }
+
+    /**
+     * Pick the next laser of the solution, going round all of them.
+     */
+    private int nextLaser() {
+        this.next = this.next + 1 == this.rows.length ? 0 : this.next + 1;
+        return this.next;
+    }
+}
@@ -0,0 +1,97 @@
+package lasers.bench;
+
+import lasers.model.SafeConfig;
+import lasers.model.SafePath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of the SafeConfig operations the backtracker runs at
+ * every node.  Each one works on a config half way to the solution,
+ * made by replaying half of the solution's moves, and on the solution
+ * itself.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafeConfigBenchmark {
+
+    @Param({"14x24safe-hard", "20x36safe-hard"})
+    public String safe;
+
+    /** a config half way to the solution */
+    private SafeConfig partial;
+    /** the partial config with the next laser of the solution placed */
+    private SafeConfig child;
+    private SafeConfig solution;
+    /** the next laser of the solution after the partial config */
+    private int row;
+    private int col;
+    /** a numbered pillar of the safe */
+    private int pillarRow;
+    private int pillarCol;
+
+    @Setup
+    public void setup() throws FileNotFoundException {
+        SafeConfig init = new SafeConfig(Safes.path(this.safe));
+        this.solution = Safes.solve(init);
+        SafePath path = new SafePath(init, this.solution);
+        int half = path.getMoveCount() / 2;
+        this.partial = (SafeConfig) path.getStep(half);
+        this.row = path.getRow(half);
+        this.col = path.getCol(half);
+        this.child = new SafeConfig(this.partial, this.row, this.col, true);
+
+        String[][] board = init.getBoard();
+        for (int r = 0; r < board.length; r++) {
+            for (int c = 0; c < board[r].length; c++) {
+                if (Character.isDigit(board[r][c].charAt(0))) {
+                    this.pillarRow = r;
+                    this.pillarCol = c;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return this.child.isValid();
+    }
+
+    @Benchmark
+    public boolean isGoalPartial() {
+        return this.partial.isGoal();
+    }
+
+    @Benchmark
+    public boolean isGoalSolution() {
+        return this.solution.isGoal();
+    }
+
+    @Benchmark
+    public boolean pillarChecker() {
+        return this.solution.pillarChecker(this.pillarRow, this.pillarCol);
+    }
+
+    @Benchmark
+    public SafeConfig copyConstructor() {
+        return new SafeConfig(this.partial, this.row, this.col, true);
+    }
+}
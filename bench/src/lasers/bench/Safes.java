@@ -0,0 +1,43 @@
+package lasers.bench;
+
+import lasers.backtracking.Configuration;
+import lasers.backtracking.SatEngine;
+import lasers.model.SafeConfig;
+
+import java.util.Optional;
+
+/**
+ * Helpers shared by the benchmarks for finding and solving the safes
+ * in tests/.  The benchmarks are run from the project directory.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+final class Safes {
+
+    private Safes() {
+    }
+
+    /**
+     * Get the file of a safe in tests/.
+     *
+     * @param safe the name of the safe, without .txt
+     * @return the path of its file
+     */
+    static String path(String safe) {
+        return "tests/" + safe + ".txt";
+    }
+
+    /**
+     * Solve a safe to set up a benchmark.
+     *
+     * @param init the safe
+     * @return its solution
+     */
+    static SafeConfig solve(SafeConfig init) {
+        Optional<Configuration> sol = new SatEngine().solve(init);
+        if (!sol.isPresent()) {
+            throw new IllegalStateException("The benchmark safe has no solution");
+        }
+        return (SafeConfig) sol.get();
+    }
+}
@@ -0,0 +1,55 @@
+package lasers.bench;
+
+import lasers.backtracking.Configuration;
+import lasers.backtracking.DancingLinks;
+import lasers.backtracking.SatEngine;
+import lasers.model.CellOrder;
+import lasers.model.SafeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end solves of every safe in tests/, from reading the file to
+ * the solution, with the Dancing Links and SAT engines.  Both of them
+ * solve every safe in well under a second, so the whole corpus can be
+ * tracked from release to release.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolveBenchmark {
+
+    @Param({"4x4safe", "7x7safe", "8x8safe", "10x8safe", "14x14safe",
+            "10x18safe-easy", "10x18safe-medium", "14x24safe-medium", "14x24safe-hard",
+            "20x36safe-easy", "20x36safe-medium", "20x36safe-hard"})
+    public String safe;
+
+    @Param({"dlx", "sat"})
+    public String engine;
+
+    @Benchmark
+    public Optional<Configuration> solve() throws FileNotFoundException {
+        SafeConfig init = new SafeConfig(Safes.path(this.safe), true, CellOrder.MOST_CONSTRAINED);
+        if (this.engine.equals("dlx")) {
+            return new DancingLinks().solve(init);
+        }
+        return new SatEngine().solve(init);
+    }
+}
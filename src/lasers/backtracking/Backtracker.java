@@ -1,26 +1,73 @@
 package lasers.backtracking;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class represents the classic recursive backtracking algorithm.
  * It has a solver that can take a valid configuration and return a
  * solution, if one exists.
  *
- * This file comes from the backtracking lecture. It should be useful
- * in this project. A second method has been added that you should
- * implement.
+ * This file comes from the backtracking lecture.  Its entry points are:<br>
+ *     solve: the original search, copying each successor<br>
+ *     solveInPlace: the same search applying and undoing moves on one
+ *     mutable configuration<br>
+ *     solveIterative: solveInPlace with an explicit stack instead of
+ *     recursion, for searches too deep for the thread's stack<br>
+ *     solveWithPath: solve, returning every configuration from the
+ *     start to the solution<br>
+ *     countSolutions: count the solutions, up to a limit<br>
+ *
+ * Every search but solveWithPath counts its nodes, obeys the
+ * SolveOptions budget and reports how it ended through getOutcome().
  *
  * @author RIT CS
  * @author Lukowski, Matthew and Muthuswamy, Vishnu
  */
 public class Backtracker {
 
+    /** the number of levels the iterative search makes room for at first */
+    private static final int INITIAL_STACK = 64;
+    /** how many nodes go by between looks at the clock and the cancel token */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * How the last search ended
+     */
+    public enum Outcome {
+        SOLVED,
+        NO_SOLUTION,
+        BUDGET_EXCEEDED
+    }
+
     private boolean debug;
 
+    /** the number of configurations looked at since the backtracker was made */
+    private long nodes;
+
+    /** the refuted configurations to skip, or null to remember nothing */
+    private TranspositionTable table;
+    /** how far below the root the current configuration is */
+    private int depth;
+
+    /** the limits of each search, or null for none */
+    private SolveOptions options;
+    /** the node count the current search stops after, 0 for no limit */
+    private long nodeLimit;
+    /** the System.nanoTime() the current search stops at, if it has a deadline */
+    private long deadline;
+    private boolean hasDeadline;
+    /** whether the current search ran out of budget */
+    private boolean stopped;
+    /** whether the last search found a goal */
+    private boolean found;
+
+    /** the counters to fill in, or null to count nothing */
+    private SearchStats stats;
 
     /**
      * Initialize a new backtracker.
@@ -34,6 +81,62 @@ public class Backtracker {
         }
     }
 
+    /**
+     * Get the number of configurations the backtracker has looked at.
+     *
+     * @return the node count
+     */
+    public long getNodeCount() {
+        return this.nodes;
+    }
+
+    /**
+     * Let the backtracker remember refuted configurations, so it skips
+     * them when another path leads to the same one.  Only configurations
+     * that implement HashedConfiguration are remembered.
+     *
+     * @param table the table to use, or null to turn it off
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Set the limits each search runs under.  Solve, solveInPlace,
+     * solveIterative and countSolutions check them as they go, and a
+     * search that runs out stops with getOutcome() returning
+     * BUDGET_EXCEEDED.
+     *
+     * @param options the limits, or null for none
+     */
+    public void setOptions(SolveOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Let the backtracker count what it does in solve, solveInPlace,
+     * solveIterative and countSolutions.
+     *
+     * @param stats the counters to fill in, or null to turn them off
+     */
+    public void setStats(SearchStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Get how the last search ended.  Once a search has stopped early,
+     * an empty result only means it ran out of budget, not that there
+     * is no solution.
+     *
+     * @return SOLVED, NO_SOLUTION or BUDGET_EXCEEDED
+     */
+    public Outcome getOutcome() {
+        if (this.stopped) {
+            return Outcome.BUDGET_EXCEEDED;
+        }
+        return this.found ? Outcome.SOLVED : Outcome.NO_SOLUTION;
+    }
+
     /**
      * A utility routine for printing out various debug messages.
      *
@@ -54,16 +157,40 @@ public class Backtracker {
      * @return A solution config, or Optional.empty() if no solution
      */
     public Optional<Configuration> solve(Configuration config) {
+        begin();
+        return finish(search(config));
+    }
+
+    /**
+     * The recursive search behind solve().
+     *
+     * @param config A valid configuration
+     * @return A solution config, or Optional.empty() if no solution
+     */
+    private Optional<Configuration> search(Configuration config) {
+        this.nodes++;
+        if (outOfBudget()) {
+            return Optional.empty();
+        }
+        recordNode();
         debugPrint("Current config", config);
         if (config.isGoal()) {
             debugPrint("\tGoal config", config);
             return Optional.of(config);
         } else {
-            for (Configuration child : config.getSuccessors()) {
-                if (child.isValid()) {
+            if (isRefuted(config)) {
+                return Optional.empty();
+            }
+            recordExpansion();
+            Iterator<Configuration> successors = config.successorIterator();
+            while (successors.hasNext()) {
+                Configuration child = successors.next();
+                if (isValidSuccessor(child)) {
                     debugPrint("\tValid successor", child);
-                    Optional<Configuration> sol = solve(child);
-                    if (sol.isPresent()) {
+                    this.depth++;
+                    Optional<Configuration> sol = search(child);
+                    this.depth--;
+                    if (sol.isPresent() || this.stopped) {
                         return sol;
                     }
                 } else {
@@ -71,30 +198,391 @@ public class Backtracker {
                 }
             }
             // implicit backtracking happens here
+            storeRefuted(config);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Try find a solution, if one exists, by searching a single
+     * configuration in place.  Each move is applied, explored and then
+     * undone, so no successor configurations are built.  The config is
+     * back in its starting state when this returns.
+     *
+     * @param config A valid configuration
+     * @return A copy of the solution config, or Optional.empty() if no solution
+     */
+    public Optional<Configuration> solveInPlace(MutableConfiguration config) {
+        begin();
+        return finish(searchInPlace(config));
+    }
+
+    /**
+     * The recursive search behind solveInPlace().
+     *
+     * @param config A valid configuration
+     * @return A copy of the solution config, or Optional.empty() if no solution
+     */
+    private Optional<Configuration> searchInPlace(MutableConfiguration config) {
+        this.nodes++;
+        if (outOfBudget()) {
+            return Optional.empty();
+        }
+        recordNode();
+        debugPrint("Current config", config);
+        if (config.isGoal()) {
+            debugPrint("\tGoal config", config);
+            return Optional.of(config.copy());
+        }
+        if (isRefuted(config)) {
+            return Optional.empty();
+        }
+        recordExpansion();
+        int moves = config.getMoveCount();
+        for (int move = 0; move < moves; move++) {
+            config.apply(move);
+            if (isValidSuccessor(config)) {
+                debugPrint("\tValid successor", config);
+                this.depth++;
+                Optional<Configuration> sol = searchInPlace(config);
+                this.depth--;
+                if (sol.isPresent() || this.stopped) {
+                    config.undo();
+                    return sol;
+                }
+            } else {
+                debugPrint("\tInvalid successor", config);
+            }
+            config.undo();
+        }
+        storeRefuted(config);
+        return Optional.empty();
+    }
+
+    /**
+     * Try find a solution the same way as solveInPlace(), but without
+     * recursion.  The search keeps one move record per level on an
+     * explicit stack, the next move to try and how many there are, so
+     * a deep search costs a few bytes per level instead of a Java stack
+     * frame and very large safes cannot overflow the thread's stack.
+     * It looks at the same configs in the same order as solveInPlace(),
+     * so it finds the same solution.  The config is back in its
+     * starting state when this returns.
+     *
+     * @param config A valid configuration
+     * @return A copy of the solution config, or Optional.empty() if no solution
+     */
+    public Optional<Configuration> solveIterative(MutableConfiguration config) {
+        begin();
+        this.nodes++;
+        if (outOfBudget()) {
+            return Optional.empty();
+        }
+        recordNode();
+        debugPrint("Current config", config);
+        if (config.isGoal()) {
+            debugPrint("\tGoal config", config);
+            return finish(Optional.of(config.copy()));
+        }
+        if (isRefuted(config)) {
+            return Optional.empty();
+        }
+        recordExpansion();
+        int[] next = new int[INITIAL_STACK];
+        int[] moves = new int[INITIAL_STACK];
+        int level = 0;
+        moves[0] = config.getMoveCount();
+        while (level >= 0) {
+            if (next[level] < moves[level]) {
+                config.apply(next[level]++);
+                if (isValidSuccessor(config)) {
+                    debugPrint("\tValid successor", config);
+                    this.nodes++;
+                    this.depth = level + 1;
+                    if (outOfBudget()) {
+                        for (; level >= 0; level--) {
+                            config.undo();
+                        }
+                        this.depth = 0;
+                        return Optional.empty();
+                    }
+                    recordNode();
+                    debugPrint("Current config", config);
+                    if (config.isGoal()) {
+                        debugPrint("\tGoal config", config);
+                        Configuration goal = config.copy();
+                        for (; level >= 0; level--) {
+                            config.undo();
+                        }
+                        this.depth = 0;
+                        return finish(Optional.of(goal));
+                    }
+                    if (!isRefuted(config)) {
+                        recordExpansion();
+                        level++;
+                        if (level == next.length) {
+                            next = Arrays.copyOf(next, 2 * level);
+                            moves = Arrays.copyOf(moves, 2 * level);
+                        }
+                        next[level] = 0;
+                        moves[level] = config.getMoveCount();
+                        continue;
+                    }
+                } else {
+                    debugPrint("\tInvalid successor", config);
+                }
+                config.undo();
+            } else {
+                // every move here failed, so back up a level
+                this.depth = level;
+                storeRefuted(config);
+                level--;
+                if (level >= 0) {
+                    config.undo();
+                }
+            }
         }
+        this.depth = 0;
         return Optional.empty();
     }
 
+    /**
+     * Start a new search, setting up its budget from the options.
+     */
+    private void begin() {
+        this.depth = 0;
+        this.stopped = false;
+        this.found = false;
+        this.nodeLimit = 0;
+        this.hasDeadline = false;
+        if (this.options != null) {
+            if (this.options.getMaxNodes() > 0) {
+                this.nodeLimit = this.nodes + this.options.getMaxNodes();
+            }
+            if (this.options.getTimeoutMillis() > 0) {
+                this.hasDeadline = true;
+                this.deadline = System.nanoTime() + this.options.getTimeoutMillis() * 1000000;
+            }
+        }
+    }
+
+    /**
+     * Record whether a search found a goal.
+     *
+     * @param sol the result of the search
+     * @return the same result
+     */
+    private Optional<Configuration> finish(Optional<Configuration> sol) {
+        this.found = sol.isPresent();
+        return sol;
+    }
+
+    /**
+     * Check whether the current search has run out of budget.  The node
+     * limit is checked at every node, but the clock and the cancel token
+     * only every CHECK_INTERVAL nodes, so the check costs next to
+     * nothing.  Once it is out, it stays out until the next search.
+     *
+     * @return true if the search has to stop
+     */
+    private boolean outOfBudget() {
+        if (this.options == null || this.stopped) {
+            return this.stopped;
+        }
+        if (this.nodeLimit != 0 && this.nodes > this.nodeLimit) {
+            this.stopped = true;
+        } else if ((this.nodes & (CHECK_INTERVAL - 1)) == 0) {
+            AtomicBoolean cancelToken = this.options.getCancelToken();
+            this.stopped = (this.hasDeadline && System.nanoTime() - this.deadline >= 0)
+                    || (cancelToken != null && cancelToken.get());
+        }
+        return this.stopped;
+    }
+
+    /**
+     * Count a node in the stats, if there are any.
+     */
+    private void recordNode() {
+        if (this.stats != null) {
+            this.stats.recordNode(this.depth);
+        }
+    }
+
+    /**
+     * Count a node whose successors are generated in the stats, if there
+     * are any.
+     */
+    private void recordExpansion() {
+        if (this.stats != null) {
+            this.stats.recordExpansion();
+        }
+    }
+
+    /**
+     * Check whether a successor is valid, counting it in the stats if
+     * there are any.
+     *
+     * @param child the successor
+     * @return true if it is valid
+     */
+    private boolean isValidSuccessor(Configuration child) {
+        boolean valid = child.isValid();
+        if (this.stats != null) {
+            this.stats.recordSuccessor(valid);
+        }
+        return valid;
+    }
+
+    /**
+     * Check the transposition table, if there is one, for a config.
+     *
+     * @param config the config about to be searched
+     * @return true if it is known to have no goal below it
+     */
+    private boolean isRefuted(Configuration config) {
+        return this.table != null && config instanceof HashedConfiguration
+                && this.table.isRefuted(((HashedConfiguration) config).getHashKey());
+    }
+
+    /**
+     * Record in the transposition table, if there is one, that a config
+     * has no goal below it.  Nothing is stored once the search has run
+     * out of budget, since the config was not searched to the end.
+     *
+     * @param config the config that was searched
+     */
+    private void storeRefuted(Configuration config) {
+        if (this.table != null && !this.stopped && config instanceof HashedConfiguration) {
+            this.table.storeRefuted(((HashedConfiguration) config).getHashKey(), this.depth);
+        }
+    }
+
+    /**
+     * Count the goal configurations below a configuration, stopping as
+     * soon as limit of them have been found.  If the search runs out of
+     * budget the count is only of the solutions found so far.  With a limit of 2 this
+     * checks that a puzzle has exactly one solution while searching
+     * only as far as it takes to see a second one.  A config that is a
+     * MutableConfiguration is searched in place.
+     *
+     * @param config A valid configuration
+     * @param limit the number of solutions to stop at
+     * @return the number of solutions, at most limit
+     */
+    public long countSolutions(Configuration config, long limit) {
+        begin();
+        long count;
+        if (config instanceof MutableConfiguration) {
+            count = countInPlace((MutableConfiguration) config, limit);
+        } else {
+            count = count(config, limit);
+        }
+        this.found = count > 0;
+        return count;
+    }
+
+    /**
+     * The recursive search behind countSolutions().
+     *
+     * @param config A valid configuration
+     * @param limit the number of solutions to stop at
+     * @return the number of solutions, at most limit
+     */
+    private long count(Configuration config, long limit) {
+        this.nodes++;
+        if (outOfBudget()) {
+            return 0;
+        }
+        recordNode();
+        debugPrint("Current config", config);
+        if (config.isGoal()) {
+            debugPrint("\tGoal config", config);
+            return 1;
+        }
+        if (isRefuted(config)) {
+            return 0;
+        }
+        recordExpansion();
+        long count = 0;
+        Iterator<Configuration> successors = config.successorIterator();
+        while (successors.hasNext()) {
+            Configuration child = successors.next();
+            if (isValidSuccessor(child)) {
+                this.depth++;
+                count += count(child, limit - count);
+                this.depth--;
+                if (count >= limit || this.stopped) {
+                    return count;
+                }
+            }
+        }
+        if (count == 0) {
+            storeRefuted(config);
+        }
+        return count;
+    }
+
+    /**
+     * The in-place search behind countSolutions().  The config is back in
+     * its starting state when this returns.
+     *
+     * @param config A valid configuration
+     * @param limit the number of solutions to stop at
+     * @return the number of solutions, at most limit
+     */
+    private long countInPlace(MutableConfiguration config, long limit) {
+        this.nodes++;
+        if (outOfBudget()) {
+            return 0;
+        }
+        recordNode();
+        debugPrint("Current config", config);
+        if (config.isGoal()) {
+            debugPrint("\tGoal config", config);
+            return 1;
+        }
+        if (isRefuted(config)) {
+            return 0;
+        }
+        recordExpansion();
+        long count = 0;
+        int moves = config.getMoveCount();
+        for (int move = 0; move < moves && count < limit && !this.stopped; move++) {
+            config.apply(move);
+            if (isValidSuccessor(config)) {
+                this.depth++;
+                count += countInPlace(config, limit - count);
+                this.depth--;
+            }
+            config.undo();
+        }
+        if (count == 0) {
+            storeRefuted(config);
+        }
+        return count;
+    }
+
     /**
      * Find a goal configuration if it exists, and how to get there.
      *
      * @param current the starting configuration
-     * @return a list of configurations to get to a goal configuration.
-     * If there are none, return null.
+     * @return a list of configurations to get to a goal configuration,
+     * starting with current and ending with the goal.  If there are
+     * none, return null.
      */
     public List<Configuration> solveWithPath(Configuration current) {
-        List<Configuration> path = new LinkedList<>();
         if(current.isGoal()){
-            path.add(0, current);
+            List<Configuration> path = new LinkedList<>();
+            path.add(current);
             return path;
         }
-        else{
-            for(Configuration config : current.getSuccessors()){
-                if(config.isValid()){
-                    path = solveWithPath(config);
-                }
+        Iterator<Configuration> successors = current.successorIterator();
+        while(successors.hasNext()){
+            Configuration config = successors.next();
+            if(config.isValid()){
+                List<Configuration> path = solveWithPath(config);
                 if(path != null){
-                    path.add(0, config);
+                    path.add(0, current);
                     return path;
                 }
             }
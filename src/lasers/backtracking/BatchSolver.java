@@ -0,0 +1,455 @@
+package lasers.backtracking;
+
+import lasers.model.CellOrder;
+import lasers.model.SafeParser;
+import lasers.model.SafeCorpus;
+import lasers.model.SafeConfig;
+import lasers.model.Symmetry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This is the main class for solving a whole corpus of safes in one
+ * run, so the JVM starts and warms up once rather than once per safe.
+ * The safes are solved by a pool of worker threads, and a result line
+ * is written for each one as soon as it is done, in the order they
+ * finish.  Safes are read only a few per worker ahead of the solving,
+ * so a long file or stream is never held in memory at once.  Once
+ * every safe is done the overall throughput is printed to standard
+ * error, so it stays out of the results.
+ *
+ * The safes are one file, every file in a directory, every file
+ * matching a glob such as tests/*safe*.txt, every safe in a SafeCorpus
+ * file ending in .lsb, or with - every safe on standard input.  A file can hold many
+ * safes one after another; each is then named file#n in the results.
+ * The safes in a file end at the first line that does not start with a
+ * number, such as the notes after the board in the tests directory.
+ * Standard input should hold nothing but safes, so text left unread
+ * there is reported on standard error.
+ * The options select:<br>
+ *     -threads=n: the number of workers (default: one per processor)<br>
+ *     -format=csv|jsonl: the result format (default: csv)<br>
+ *     -out=file: write the results to a file instead of standard output<br>
+ *     -engine=name: solve with the backtracker (default), dlx or sat<br>
+ *     -order=policy: pick cells by column_major, pillar_first or most_constrained<br>
+ *     -timeout=millis: give up on a safe after this long; only the
+ *     backtracker can be stopped, the other engines always finish<br>
+ *     -cache=dir: answer safes solved before from a SolutionCache kept in dir<br>
+ *
+ * Each result holds the file, its status (solved, unsolved, timeout or
+ * error), the time it took in milliseconds and the engine's node count,
+ * which is 0 for a safe answered from the cache.  A safe that is a
+ * rotation or reflection of another one in the run is only solved once,
+ * and the copies get its status with a node count of 0.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class BatchSolver {
+
+    /** the most solutions the cache keeps in memory */
+    private static final int CACHE_ENTRIES = 4096;
+
+    /** the safes read but not yet written, per worker */
+    private static final int QUEUE_PER_WORKER = 4;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java BatchSolver file|dir|glob|corpus.lsb|- [-threads=n] [-format=csv|jsonl] [-out=file]" +
+                    " [-engine=backtracker|dlx|sat] [-order=policy] [-timeout=millis (backtracker only)] [-cache=dir]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean json = false;
+        String out = null;
+        String engine = "backtracker";
+        CellOrder order = CellOrder.COLUMN_MAJOR;
+        long timeout = 0;
+        SolutionCache cache = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("-threads=")) {
+                threads = Integer.parseInt(args[i].substring("-threads=".length()));
+            } else if (args[i].equals("-format=csv") || args[i].equals("-format=jsonl")) {
+                json = args[i].equals("-format=jsonl");
+            } else if (args[i].startsWith("-out=")) {
+                out = args[i].substring("-out=".length());
+            } else if (args[i].startsWith("-cache=")) {
+                cache = new SolutionCache(CACHE_ENTRIES, Paths.get(args[i].substring("-cache=".length())));
+            } else if (args[i].startsWith("-timeout=")) {
+                timeout = Long.parseLong(args[i].substring("-timeout=".length()));
+            } else if (args[i].startsWith("-engine=")) {
+                engine = args[i].substring("-engine=".length());
+                if (!engine.equals("backtracker") && !engine.equals("dlx")
+                        && !engine.equals("sat")) {
+                    System.out.println("Unknown engine: " + engine);
+                    return;
+                }
+            } else if (args[i].startsWith("-order=")) {
+                try {
+                    order = CellOrder.valueOf(args[i].substring("-order=".length()).toUpperCase());
+                } catch (IllegalArgumentException iae) {
+                    System.out.println("Unknown order: " + args[i]);
+                    return;
+                }
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+
+        SafeCorpus corpus = null;
+        List<Path> files = null;
+        if (args[0].endsWith(".lsb") && Files.isRegularFile(Paths.get(args[0]))) {
+            corpus = new SafeCorpus(Paths.get(args[0]));
+        } else if (!args[0].equals("-")) {
+            files = findSafes(args[0]);
+        }
+        if ((corpus != null && corpus.size() == 0) || (files != null && files.isEmpty())) {
+            System.out.println("No safes found: " + args[0]);
+            return;
+        }
+
+        PrintStream results = out == null ? System.out : new PrintStream(out);
+        if (!json) {
+            results.println("file,status,millis,nodes");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Batch batch = new Batch(pool, QUEUE_PER_WORKER * threads, engine, order, timeout, cache, results, json);
+        long start = System.nanoTime();
+        try {
+            // each safe is read as room comes free, so no more than the
+            // window is held at once however many there are
+            if (corpus != null) {
+                SafeCorpus safes = corpus;
+                for (int i = 0; i < corpus.size(); i++) {
+                    int safe = i;
+                    batch.add(args[0] + "#" + i, () -> safes.getBoard(safe));
+                }
+            } else if (files == null) {
+                // unlike a safe file, which may end in notes, the stream
+                // should hold nothing but safes
+                int unread = readSafes("stdin", System.in, batch);
+                if (unread > 0) {
+                    System.err.println("stdin: line " + unread + " does not start a safe, the rest is left unread");
+                }
+            } else {
+                for (Path safe : files) {
+                    try (InputStream in = Files.newInputStream(safe)) {
+                        readSafes(safe.toString(), in, batch);
+                    }
+                }
+            }
+            batch.finish();
+        } finally {
+            pool.shutdown();
+            if (results != System.out) {
+                results.close();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int[] counts = batch.counts;
+        System.err.printf("%d safes in %.3f seconds: %d solved, %d unsolved, %d timeout, %d error%n",
+                batch.safes, seconds, counts[Status.SOLVED.ordinal()], counts[Status.UNSOLVED.ordinal()],
+                counts[Status.TIMEOUT.ordinal()], counts[Status.ERROR.ordinal()]);
+        System.err.printf("Throughput: %.2f puzzles/sec%n", batch.safes / seconds);
+        if (cache != null) {
+            System.err.println(cache);
+        }
+    }
+
+    /**
+     * Find the safes to solve: one file, every regular file in a
+     * directory, or every regular file a glob matches.
+     *
+     * @param pattern a file, a directory or a glob
+     * @return the safes, sorted by path
+     * @throws IOException if a directory could not be read
+     */
+    private static List<Path> findSafes(String pattern) throws IOException {
+        String fixed = pattern.replaceAll("[*?\\[{].*", "");
+        Stream<Path> files;
+        if (fixed.equals(pattern) && Files.isRegularFile(Paths.get(pattern))) {
+            files = Stream.of(Paths.get(pattern));
+        } else if (fixed.equals(pattern)) {
+            files = Files.list(Paths.get(pattern));
+        } else {
+            // walk from the deepest directory before the first wildcard
+            Path root = Paths.get(fixed + "x").getParent();
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            files = Files.walk(root == null ? Paths.get("") : root).filter(matcher::matches);
+        }
+        try (Stream<Path> found = files) {
+            return found.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Solve one safe on a worker thread.  A safe that is a rotation or
+     * reflection of one already taken by a worker is not solved again;
+     * its result is returned at once, holding the status of that one to
+     * come, so the worker is not held up waiting for it.
+     *
+     * @param name the safe's name in the results
+     * @param reader reads the safe
+     * @param engine the name of the engine
+     * @param order the policy the config picks cells by
+     * @param timeout the time limit in milliseconds, 0 for none
+     * @param cache the solutions found before, or null for none
+     * @param taken the status of each canonical safe a worker has taken
+     * @return the result of the safe
+     */
+    private static Result solve(String name, Callable<String[][]> reader, String engine, CellOrder order,
+                                long timeout, SolutionCache cache, Map<String, CompletableFuture<Status>> taken) {
+        Result result = new Result();
+        result.file = name;
+        long start = System.nanoTime();
+        CompletableFuture<Status> mine = new CompletableFuture<>();
+        try {
+            String[][] board = reader.call();
+            CompletableFuture<Status> first = taken.putIfAbsent(
+                    SolutionCache.key(Symmetry.canonical(board).apply(board)), mine);
+            if (first != null) {
+                result.copyOf = first;
+            } else if (cache != null && cache.get(board).isPresent()) {
+                result.status = Status.SOLVED;
+            } else {
+                solve(board, engine, order, timeout, cache, result);
+            }
+        } catch (Exception | StackOverflowError | OutOfMemoryError e) {
+            result.status = Status.ERROR;
+        } finally {
+            // the copies of this safe are waiting on its status
+            mine.complete(result.status == null ? Status.ERROR : result.status);
+        }
+        result.millis = (System.nanoTime() - start) / 1e6;
+        return result;
+    }
+
+    /**
+     * Read every safe in a stream, handing each to the batch as it is
+     * read.  A stream that does not start with a safe, or has one that
+     * stops part way, gets a reader that fails, so it shows up as an
+     * error in the results.
+     *
+     * @param name the name of the stream
+     * @param in the stream
+     * @param batch the safes being solved; each is named after the
+     *              stream, with #n added if it holds more than one
+     * @return the line where text that does not start a safe was left
+     *         unread, or 0 if the stream was read to the end
+     * @throws InterruptedException if interrupted waiting for room
+     */
+    private static int readSafes(String name, InputStream in, Batch batch) throws InterruptedException {
+        SafeParser parser = new SafeParser(in);
+        int index = 0;
+        try {
+            boolean more;
+            do {
+                String[][] board = parser.next();
+                // look ahead, so a stream of one safe keeps its own name
+                more = parser.hasNext();
+                batch.add(index == 0 && !more ? name : name + "#" + index, () -> board);
+                index++;
+            } while (more);
+            return parser.isAtEnd() ? 0 : parser.getLine();
+        } catch (IOException ioe) {
+            batch.add(index == 0 ? name : name + "#" + index, () -> {
+                throw ioe;
+            });
+            return 0;
+        }
+    }
+
+    /**
+     * Solve a safe with an engine, filling in the status and node count.
+     */
+    static void solve(String[][] board, String engine, CellOrder order, long timeout,
+                              SolutionCache cache, Result result) {
+        SafeConfig init = new SafeConfig(board, true, order);
+        Optional<Configuration> sol;
+        if (engine.equals("dlx")) {
+            DancingLinks dlx = new DancingLinks();
+            sol = dlx.solve(init);
+            result.nodes = dlx.getNodeCount();
+        } else if (engine.equals("sat")) {
+            SatEngine sat = new SatEngine();
+            sol = sat.solve(init);
+            result.nodes = sat.getDecisionCount();
+        } else {
+            Backtracker bt = new Backtracker(false);
+            SolveOptions options = new SolveOptions();
+            options.setTimeoutMillis(timeout);
+            bt.setOptions(options);
+            sol = bt.solveInPlace(init);
+            result.nodes = bt.getNodeCount();
+            if (bt.getOutcome() == Backtracker.Outcome.BUDGET_EXCEEDED) {
+                result.status = Status.TIMEOUT;
+                return;
+            }
+        }
+        result.status = sol.isPresent() ? Status.SOLVED : Status.UNSOLVED;
+        if (cache != null && sol.isPresent()) {
+            cache.put(board, ((SafeConfig) sol.get()).getBoard());
+        }
+    }
+
+    /**
+     * The safes handed to the workers whose results are not yet written.
+     * Adding a safe waits, writing the results that are done, while the
+     * window is full, so the reading keeps only a little ahead of the
+     * solving.
+     */
+    private static class Batch {
+        private final CompletionService<Result> done;
+        private final int window;
+        private final String engine;
+        private final CellOrder order;
+        private final long timeout;
+        private final SolutionCache cache;
+        private final PrintStream results;
+        private final boolean json;
+        /** the status of each canonical safe a worker has taken */
+        private final Map<String, CompletableFuture<Status>> taken = new ConcurrentHashMap<>();
+        /** copies of a safe still being solved, written once it is done */
+        private final List<Result> copies = new ArrayList<>();
+        /** the results written, by status */
+        final int[] counts = new int[Status.values().length];
+        /** the safes added */
+        int safes;
+        /** the safes with a worker */
+        private int inFlight;
+
+        Batch(ExecutorService pool, int window, String engine, CellOrder order, long timeout,
+              SolutionCache cache, PrintStream results, boolean json) {
+            this.done = new ExecutorCompletionService<>(pool);
+            this.window = window;
+            this.engine = engine;
+            this.order = order;
+            this.timeout = timeout;
+            this.cache = cache;
+            this.results = results;
+            this.json = json;
+        }
+
+        /**
+         * Hand a safe to the workers, once there is room for it.
+         *
+         * @param name the safe's name in the results
+         * @param reader reads the safe
+         * @throws InterruptedException if interrupted waiting for room
+         */
+        void add(String name, Callable<String[][]> reader) throws InterruptedException {
+            while (this.inFlight >= this.window) {
+                take();
+            }
+            this.done.submit(() -> solve(name, reader, this.engine, this.order, this.timeout, this.cache,
+                    this.taken));
+            this.inFlight++;
+            this.safes++;
+        }
+
+        /**
+         * Wait for every safe added and write its result.
+         *
+         * @throws InterruptedException if interrupted waiting
+         */
+        void finish() throws InterruptedException {
+            while (this.inFlight > 0) {
+                take();
+            }
+        }
+
+        /**
+         * Wait for the next safe to be done, write its result and those
+         * of the copies now known.
+         */
+        private void take() throws InterruptedException {
+            Result result;
+            try {
+                result = this.done.take().get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A safe could not be solved", e);
+            }
+            this.inFlight--;
+            if (result.copyOf != null) {
+                this.copies.add(result);
+            } else {
+                print(result);
+            }
+            for (Iterator<Result> waiting = this.copies.iterator(); waiting.hasNext(); ) {
+                Result copy = waiting.next();
+                if (copy.copyOf.isDone()) {
+                    copy.status = copy.copyOf.join();
+                    print(copy);
+                    waiting.remove();
+                }
+            }
+        }
+
+        /**
+         * Write a result and count its status.
+         */
+        private void print(Result result) {
+            this.counts[result.status.ordinal()]++;
+            this.results.println(this.json ? result.toJson() : result.toCsv());
+            this.results.flush();
+        }
+    }
+
+    /**
+     * What happened to a safe.
+     */
+    enum Status {
+        SOLVED, UNSOLVED, TIMEOUT, ERROR
+    }
+
+    /**
+     * The result of one safe.
+     */
+    static class Result {
+        String file;
+        Status status;
+        double millis;
+        long nodes;
+        /** for a copy of another safe in the run, that safe's status to come */
+        CompletableFuture<Status> copyOf;
+
+        String toCsv() {
+            String file = this.file;
+            if (file.contains(",") || file.contains("\"")) {
+                file = "\"" + file.replace("\"", "\"\"") + "\"";
+            }
+            return String.format(Locale.ROOT, "%s,%s,%.3f,%d", file, this.status.name().toLowerCase(),
+                    this.millis, this.nodes);
+        }
+
+        String toJson() {
+            String file = this.file.replace("\\", "\\\\").replace("\"", "\\\"");
+            return String.format(Locale.ROOT, "{\"file\":\"%s\",\"status\":\"%s\",\"millis\":%.3f,\"nodes\":%d}",
+                    file, this.status.name().toLowerCase(), this.millis, this.nodes);
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package lasers.backtracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small conflict-driven clause learning SAT solver with no outside
+ * dependencies.  It keeps two watched literals per clause, learns a
+ * first-UIP clause from every conflict and jumps back to the level that
+ * makes it unit, picks decision variables by VSIDS activity with saved
+ * phases, and restarts on the Luby sequence.
+ *
+ * Variables are numbered from 1 and literals are written the DIMACS
+ * way: v for "v is true" and -v for "v is false".
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class CdclSolver {
+
+    /** the number of conflicts in one unit of the Luby restart sequence */
+    private static final int RESTART_UNIT = 100;
+    /** how much the activity increment grows after every conflict */
+    private static final double ACTIVITY_DECAY = 1 / 0.95;
+    /** activities are scaled down when one of them passes this */
+    private static final double ACTIVITY_LIMIT = 1e100;
+
+    private int varCount;
+    private boolean unsatisfiable;
+
+    /** the clauses, original and learned, as internal literals */
+    private List<int[]> clauses;
+    /** for each internal literal, the clauses watching it */
+    private int[][] watches;
+    private int[] watchCount;
+
+    /** for each variable, 1 if true, -1 if false and 0 if unassigned */
+    private int[] assigns;
+    private int[] level;
+    /** for each variable, the clause that implied it, or -1 for a decision */
+    private int[] reason;
+    private boolean[] savedPhase;
+
+    /** the assigned internal literals, in order */
+    private int[] trail;
+    private int trailSize;
+    /** where each decision level starts on the trail */
+    private int[] levelStart;
+    private int levels;
+    /** the next trail position to propagate */
+    private int propagated;
+
+    private double[] activity;
+    private double activityIncrement;
+    /** the variables ordered by activity, as a binary max-heap */
+    private int[] heap;
+    private int heapSize;
+    private int[] heapIndex;
+    /** the variables analyze() has met in the current conflict, cleared after each */
+    private boolean[] seen;
+
+    private long conflicts;
+    private long decisions;
+
+    /**
+     * Initialize a solver.
+     *
+     * @param varCount the number of variables
+     */
+    public CdclSolver(int varCount) {
+        this.varCount = varCount;
+        this.clauses = new ArrayList<>();
+        this.watches = new int[2 * varCount + 2][];
+        this.watchCount = new int[2 * varCount + 2];
+        for (int i = 0; i < this.watches.length; i++) {
+            this.watches[i] = new int[4];
+        }
+        this.assigns = new int[varCount + 1];
+        this.level = new int[varCount + 1];
+        this.reason = new int[varCount + 1];
+        this.savedPhase = new boolean[varCount + 1];
+        this.trail = new int[varCount + 1];
+        this.levelStart = new int[varCount + 1];
+        this.activity = new double[varCount + 1];
+        this.activityIncrement = 1;
+        this.heap = new int[varCount + 1];
+        this.heapIndex = new int[varCount + 1];
+        this.seen = new boolean[varCount + 1];
+        Arrays.fill(this.heapIndex, -1);
+        for (int v = 1; v <= varCount; v++) {
+            heapInsert(v);
+        }
+    }
+
+    /**
+     * Get the number of conflicts in the last solve.
+     *
+     * @return the conflict count
+     */
+    public long getConflictCount() {
+        return this.conflicts;
+    }
+
+    /**
+     * Get the number of decisions in the last solve.
+     *
+     * @return the decision count
+     */
+    public long getDecisionCount() {
+        return this.decisions;
+    }
+
+    /**
+     * Add a clause.  Clauses must all be added before solve is called.
+     *
+     * @param literals the literals, at least one of which must be true
+     */
+    public void addClause(int... literals) {
+        if (this.unsatisfiable) {
+            return;
+        }
+        int[] clause = new int[literals.length];
+        int size = 0;
+        for (int literal : literals) {
+            int lit = toInternal(literal);
+            boolean duplicate = false;
+            for (int i = 0; i < size; i++) {
+                if (clause[i] == lit) {
+                    duplicate = true;
+                } else if (clause[i] == (lit ^ 1)) {
+                    // always true
+                    return;
+                }
+            }
+            if (!duplicate) {
+                clause[size++] = lit;
+            }
+        }
+        if (size == 0) {
+            this.unsatisfiable = true;
+        } else if (size == 1) {
+            int value = valueOf(clause[0]);
+            if (value < 0) {
+                this.unsatisfiable = true;
+            } else if (value == 0) {
+                assign(clause[0], -1);
+            }
+        } else {
+            attach(Arrays.copyOf(clause, size));
+        }
+    }
+
+    /**
+     * Search for an assignment that satisfies every clause.
+     *
+     * @return true if the clauses are satisfiable
+     */
+    public boolean solve() {
+        this.conflicts = 0;
+        this.decisions = 0;
+        if (this.unsatisfiable || propagate() >= 0) {
+            return false;
+        }
+        int restart = 1;
+        long restartAt = luby(restart) * RESTART_UNIT;
+        while (true) {
+            int conflict = propagate();
+            if (conflict >= 0) {
+                this.conflicts++;
+                if (this.levels == 0) {
+                    return false;
+                }
+                int[] learned = analyze(conflict);
+                backtrack(this.level[learned.length > 1 ? learned[1] >> 1 : 0]);
+                if (learned.length == 1) {
+                    assign(learned[0], -1);
+                } else {
+                    assign(learned[0], attach(learned));
+                }
+                decayActivities();
+            } else if (this.conflicts >= restartAt) {
+                backtrack(0);
+                restart++;
+                restartAt = this.conflicts + luby(restart) * RESTART_UNIT;
+            } else {
+                int var = pickBranchVariable();
+                if (var == 0) {
+                    return true;
+                }
+                this.decisions++;
+                this.levelStart[this.levels++] = this.trailSize;
+                assign(2 * var + (this.savedPhase[var] ? 0 : 1), -1);
+            }
+        }
+    }
+
+    /**
+     * Get the value of a variable in the satisfying assignment.
+     *
+     * @param var the variable
+     * @return true if it is true
+     */
+    public boolean value(int var) {
+        return this.assigns[var] > 0;
+    }
+
+    /**
+     * Propagate every assignment on the trail that has not been looked
+     * at yet through the watched literals.
+     *
+     * @return the index of a clause that is false, or -1 if none
+     */
+    private int propagate() {
+        while (this.propagated < this.trailSize) {
+            int falseLit = this.trail[this.propagated++] ^ 1;
+            int[] watching = this.watches[falseLit];
+            int count = this.watchCount[falseLit];
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int c = watching[i];
+                int[] clause = this.clauses.get(c);
+                // keep the false literal in the second slot
+                if (clause[0] == falseLit) {
+                    clause[0] = clause[1];
+                    clause[1] = falseLit;
+                }
+                if (valueOf(clause[0]) > 0) {
+                    watching[kept++] = c;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < clause.length; k++) {
+                    if (valueOf(clause[k]) >= 0) {
+                        clause[1] = clause[k];
+                        clause[k] = falseLit;
+                        watch(clause[1], c);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                watching[kept++] = c;
+                if (valueOf(clause[0]) < 0) {
+                    // conflict: keep the remaining watches and stop
+                    for (i++; i < count; i++) {
+                        watching[kept++] = watching[i];
+                    }
+                    this.watchCount[falseLit] = kept;
+                    this.propagated = this.trailSize;
+                    return c;
+                }
+                assign(clause[0], c);
+            }
+            this.watchCount[falseLit] = kept;
+        }
+        return -1;
+    }
+
+    /**
+     * Learn the first-UIP clause of a conflict.  Its first literal is
+     * the one to assert and its second has the highest remaining level.
+     *
+     * @param conflict the clause that is false
+     * @return the learned clause
+     */
+    private int[] analyze(int conflict) {
+        boolean[] seen = this.seen;
+        List<Integer> learned = new ArrayList<>();
+        learned.add(0);
+        int pending = 0;
+        int lit = -1;
+        int index = this.trailSize - 1;
+        int c = conflict;
+        do {
+            int[] clause = this.clauses.get(c);
+            for (int k = lit < 0 ? 0 : 1; k < clause.length; k++) {
+                int var = clause[k] >> 1;
+                if (!seen[var] && this.level[var] > 0) {
+                    seen[var] = true;
+                    bumpActivity(var);
+                    if (this.level[var] == this.levels) {
+                        pending++;
+                    } else {
+                        learned.add(clause[k]);
+                    }
+                }
+            }
+            while (!seen[this.trail[index] >> 1]) {
+                index--;
+            }
+            lit = this.trail[index--];
+            c = this.reason[lit >> 1];
+            seen[lit >> 1] = false;
+            pending--;
+            if (c >= 0) {
+                // the implied literal sits first in its reason clause
+                int[] reasonClause = this.clauses.get(c);
+                if (reasonClause[0] != lit) {
+                    for (int k = 1; k < reasonClause.length; k++) {
+                        if (reasonClause[k] == lit) {
+                            reasonClause[k] = reasonClause[0];
+                            reasonClause[0] = lit;
+                            break;
+                        }
+                    }
+                }
+            }
+        } while (pending > 0);
+        learned.set(0, lit ^ 1);
+        // the current level was cleared as it was resolved, which leaves
+        // the lower levels, every one of them in the clause
+        for (int i = 1; i < learned.size(); i++) {
+            seen[learned.get(i) >> 1] = false;
+        }
+
+        int[] result = new int[learned.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = learned.get(i);
+        }
+        // move the literal with the highest level into the second slot
+        for (int i = 2; i < result.length; i++) {
+            if (this.level[result[i] >> 1] > this.level[result[1] >> 1]) {
+                int swap = result[1];
+                result[1] = result[i];
+                result[i] = swap;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Undo every assignment above a decision level.
+     *
+     * @param target the level to go back to
+     */
+    private void backtrack(int target) {
+        if (this.levels <= target) {
+            return;
+        }
+        for (int i = this.trailSize - 1; i >= this.levelStart[target]; i--) {
+            int var = this.trail[i] >> 1;
+            this.savedPhase[var] = this.assigns[var] > 0;
+            this.assigns[var] = 0;
+            this.reason[var] = -1;
+            if (this.heapIndex[var] < 0) {
+                heapInsert(var);
+            }
+        }
+        this.trailSize = this.levelStart[target];
+        this.propagated = this.trailSize;
+        this.levels = target;
+    }
+
+    /**
+     * Pick the unassigned variable with the highest activity.
+     *
+     * @return the variable, or 0 if every variable is assigned
+     */
+    private int pickBranchVariable() {
+        while (this.heapSize > 0) {
+            int var = heapRemoveMax();
+            if (this.assigns[var] == 0) {
+                return var;
+            }
+        }
+        return 0;
+    }
+
+    private void assign(int lit, int reasonClause) {
+        int var = lit >> 1;
+        this.assigns[var] = (lit & 1) == 0 ? 1 : -1;
+        this.level[var] = this.levels;
+        this.reason[var] = reasonClause;
+        this.trail[this.trailSize++] = lit;
+    }
+
+    /**
+     * Store a clause and watch its first two literals.
+     *
+     * @return the index of the clause
+     */
+    private int attach(int[] clause) {
+        int c = this.clauses.size();
+        this.clauses.add(clause);
+        watch(clause[0], c);
+        watch(clause[1], c);
+        return c;
+    }
+
+    private void watch(int lit, int clause) {
+        if (this.watchCount[lit] == this.watches[lit].length) {
+            this.watches[lit] = Arrays.copyOf(this.watches[lit], this.watches[lit].length * 2);
+        }
+        this.watches[lit][this.watchCount[lit]++] = clause;
+    }
+
+    /**
+     * Get the value of an internal literal.
+     *
+     * @return 1 if true, -1 if false, 0 if unassigned
+     */
+    private int valueOf(int lit) {
+        int value = this.assigns[lit >> 1];
+        return (lit & 1) == 0 ? value : -value;
+    }
+
+    private static int toInternal(int literal) {
+        return literal > 0 ? 2 * literal : -2 * literal + 1;
+    }
+
+    private void bumpActivity(int var) {
+        this.activity[var] += this.activityIncrement;
+        if (this.activity[var] > ACTIVITY_LIMIT) {
+            for (int v = 1; v <= this.varCount; v++) {
+                this.activity[v] /= ACTIVITY_LIMIT;
+            }
+            this.activityIncrement /= ACTIVITY_LIMIT;
+        }
+        if (this.heapIndex[var] >= 0) {
+            heapUp(this.heapIndex[var]);
+        }
+    }
+
+    private void decayActivities() {
+        this.activityIncrement *= ACTIVITY_DECAY;
+    }
+
+    /**
+     * The i-th element of the Luby sequence 1 1 2 1 1 2 4 1 1 2 ...
+     */
+    private static long luby(int i) {
+        int k = 1;
+        while ((1 << k) - 1 < i) {
+            k++;
+        }
+        while (i != (1 << k) - 1) {
+            i -= (1 << (k - 1)) - 1;
+            k = 1;
+            while ((1 << k) - 1 < i) {
+                k++;
+            }
+        }
+        return 1L << (k - 1);
+    }
+
+    private void heapInsert(int var) {
+        this.heap[this.heapSize] = var;
+        this.heapIndex[var] = this.heapSize;
+        heapUp(this.heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        int top = this.heap[0];
+        this.heapIndex[top] = -1;
+        this.heapSize--;
+        if (this.heapSize > 0) {
+            this.heap[0] = this.heap[this.heapSize];
+            this.heapIndex[this.heap[0]] = 0;
+            heapDown(0);
+        }
+        return top;
+    }
+
+    private void heapUp(int i) {
+        int var = this.heap[i];
+        while (i > 0 && this.activity[this.heap[(i - 1) / 2]] < this.activity[var]) {
+            this.heap[i] = this.heap[(i - 1) / 2];
+            this.heapIndex[this.heap[i]] = i;
+            i = (i - 1) / 2;
+        }
+        this.heap[i] = var;
+        this.heapIndex[var] = i;
+    }
+
+    private void heapDown(int i) {
+        int var = this.heap[i];
+        while (2 * i + 1 < this.heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.heapSize && this.activity[this.heap[child + 1]] > this.activity[this.heap[child]]) {
+                child++;
+            }
+            if (this.activity[this.heap[child]] <= this.activity[var]) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            this.heapIndex[this.heap[i]] = i;
+            i = child;
+        }
+        this.heap[i] = var;
+        this.heapIndex[var] = i;
+    }
+}
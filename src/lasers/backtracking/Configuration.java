@@ -1,6 +1,7 @@
 package lasers.backtracking;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 /**
  * The representation of a single configuration for a puzzle.
@@ -18,6 +19,19 @@ public interface Configuration {
      */
     public Collection< Configuration > getSuccessors();
 
+    /**
+     * Get the successors from the current one one at a time.  A
+     * configuration that can build each successor only when it is asked
+     * for should override this, so a search that stops early never
+     * builds the rest.  By default it walks getSuccessors().
+     *
+     * @return An iterator over all successors, valid and invalid, in
+     * the same order as getSuccessors()
+     */
+    public default Iterator< Configuration > successorIterator() {
+        return getSuccessors().iterator();
+    }
+
     /**
      * Is the current configuration valid or not?
      *
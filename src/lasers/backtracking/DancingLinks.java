@@ -0,0 +1,473 @@
+package lasers.backtracking;
+
+import lasers.model.SafeConfig;
+
+import java.util.Optional;
+
+/**
+ * This class solves a safe as a covering problem with Knuth's Dancing
+ * Links, as a second engine next to the Backtracker.
+ *
+ * Every open cell where a laser could go is an option.  The items an
+ * option covers are:
+ *   - its row and column segment, the maximal runs of cells between
+ *     pillars.  These are secondary items that at most one option may
+ *     cover, which stops lasers from seeing each other.
+ *   - every unlit cell in those two segments.  These are primary items
+ *     that need to be covered at least once, by a beam or the laser.
+ *   - every numbered pillar next to it.  These are primary items that
+ *     need to be covered exactly as often as the pillar's number.
+ * Cells can be lit twice (once per direction), so this is Algorithm X
+ * with multiplicities rather than a pure exact cover.  The search picks
+ * the active primary item with the fewest options left and tries each
+ * of them, hiding an option once it has been tried.
+ *
+ * The solution is turned back into a SafeConfig by placing its lasers
+ * on the config the engine was given.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class DancingLinks {
+
+    /** the kinds of item */
+    private static final int CELL = 0;
+    private static final int PILLAR = 1;
+    private static final int SEGMENT = 2;
+
+    /** the kinds of change recorded on the trail, in its lowest two bits */
+    private static final int HIDE = 0;
+    private static final int DECREMENT = 1;
+    private static final int DEACTIVATE = 2;
+
+    /** the number of search nodes looked at in the last solve */
+    private long nodes;
+
+    // the items: headers are nodes 0 to itemCount - 1, the root is itemCount
+    private int itemCount;
+    private int root;
+    private int[] kind;
+    private int[] need;
+    private int[] len;
+    private int[] left;
+    private int[] right;
+
+    // the nodes: item headers first, then the nodes of each option in turn
+    private int[] top;
+    private int[] up;
+    private int[] down;
+    private int[] option;
+    private int[] optionStart;
+    private int[] optionRow;
+    private int[] optionCol;
+
+    /** the changes made by the selected options, as value * 4 + kind */
+    private int[] trail;
+    private int trailSize;
+    /** the options selected on the current path */
+    private int[] chosen;
+    private int chosenSize;
+
+    /**
+     * Get the number of search nodes looked at in the last solve.
+     *
+     * @return the node count
+     */
+    public long getNodeCount() {
+        return this.nodes;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given safe.
+     *
+     * @param config the safe, with any lasers it already holds
+     * @return A solution config, or Optional.empty() if no solution
+     */
+    public Optional<Configuration> solve(SafeConfig config) {
+        this.nodes = 0;
+        if (!config.isValid()) {
+            return Optional.empty();
+        }
+        compile(config);
+        if (!search()) {
+            return Optional.empty();
+        }
+        SafeConfig solution = config;
+        for (int i = 0; i < this.chosenSize; i++) {
+            int o = this.chosen[i];
+            if (!solution.hasLaser(this.optionRow[o], this.optionCol[o])) {
+                solution = new SafeConfig(solution, this.optionRow[o], this.optionCol[o], true);
+            }
+        }
+        return solution.isGoal() ? Optional.of(solution) : Optional.empty();
+    }
+
+    /**
+     * Build the matrix for a safe from its board.
+     *
+     * @param config the safe
+     */
+    private void compile(SafeConfig config) {
+        String[][] board = config.getBoard();
+        int rowDim = config.getRowDim();
+        int colDim = config.getColDim();
+
+        // number the segments, the unlit cells and the pillars that need lasers
+        int[][] rowSegment = new int[rowDim][colDim];
+        int[][] colSegment = new int[rowDim][colDim];
+        int[][] cellItem = new int[rowDim][colDim];
+        int items = 0;
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                cellItem[r][c] = -1;
+                if (isPillar(board[r][c])) {
+                    rowSegment[r][c] = -1;
+                    colSegment[r][c] = -1;
+                } else {
+                    rowSegment[r][c] = c > 0 && rowSegment[r][c - 1] >= 0 ? rowSegment[r][c - 1] : items++;
+                }
+            }
+        }
+        for (int c = 0; c < colDim; c++) {
+            for (int r = 0; r < rowDim; r++) {
+                if (!isPillar(board[r][c])) {
+                    colSegment[r][c] = r > 0 && colSegment[r - 1][c] >= 0 ? colSegment[r - 1][c] : items++;
+                }
+            }
+        }
+        int segments = items;
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (board[r][c].equals(".")) {
+                    cellItem[r][c] = items++;
+                }
+            }
+        }
+        int[][] pillarItem = new int[rowDim][colDim];
+        int[][] pillarNeed = new int[rowDim][colDim];
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                pillarItem[r][c] = -1;
+                if (isPillar(board[r][c]) && !board[r][c].equals("X")) {
+                    pillarNeed[r][c] = Integer.parseInt(board[r][c]) - countLasers(board, r, c);
+                    if (pillarNeed[r][c] > 0) {
+                        pillarItem[r][c] = items++;
+                    }
+                }
+            }
+        }
+
+        this.itemCount = items;
+        this.root = items;
+        this.kind = new int[items + 1];
+        this.need = new int[items + 1];
+        this.len = new int[items + 1];
+        this.left = new int[items + 1];
+        this.right = new int[items + 1];
+        for (int i = 0; i < segments; i++) {
+            this.kind[i] = SEGMENT;
+        }
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (cellItem[r][c] >= 0) {
+                    this.kind[cellItem[r][c]] = CELL;
+                    this.need[cellItem[r][c]] = 1;
+                }
+                if (pillarItem[r][c] >= 0) {
+                    this.kind[pillarItem[r][c]] = PILLAR;
+                    this.need[pillarItem[r][c]] = pillarNeed[r][c];
+                }
+            }
+        }
+        // only the primary items are linked into the active list
+        int last = this.root;
+        for (int i = segments; i < items; i++) {
+            this.right[last] = i;
+            this.left[i] = last;
+            last = i;
+        }
+        this.right[last] = this.root;
+        this.left[this.root] = last;
+
+        // one option per open cell that no satisfied pillar rules out
+        int optionCount = 0;
+        int nodeCount = items + 1;
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (cellItem[r][c] >= 0 && !nextToSatisfiedPillar(board, pillarNeed, r, c)) {
+                    optionCount++;
+                    nodeCount += 2 + countSegmentCells(cellItem, rowSegment, colSegment, r, c) + 4;
+                }
+            }
+        }
+        this.top = new int[nodeCount];
+        this.up = new int[nodeCount];
+        this.down = new int[nodeCount];
+        this.option = new int[nodeCount];
+        this.optionStart = new int[optionCount + 1];
+        this.optionRow = new int[optionCount];
+        this.optionCol = new int[optionCount];
+        for (int i = 0; i <= items; i++) {
+            this.up[i] = i;
+            this.down[i] = i;
+        }
+        int node = items + 1;
+        int o = 0;
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (cellItem[r][c] < 0 || nextToSatisfiedPillar(board, pillarNeed, r, c)) {
+                    continue;
+                }
+                this.optionStart[o] = node;
+                this.optionRow[o] = r;
+                this.optionCol[o] = c;
+                node = addNode(node, o, rowSegment[r][c]);
+                node = addNode(node, o, colSegment[r][c]);
+                for (int cc = c; cc >= 0 && rowSegment[r][cc] == rowSegment[r][c]; cc--) {
+                    node = cellItem[r][cc] >= 0 ? addNode(node, o, cellItem[r][cc]) : node;
+                }
+                for (int cc = c + 1; cc < colDim && rowSegment[r][cc] == rowSegment[r][c]; cc++) {
+                    node = cellItem[r][cc] >= 0 ? addNode(node, o, cellItem[r][cc]) : node;
+                }
+                for (int rr = r - 1; rr >= 0 && colSegment[rr][c] == colSegment[r][c]; rr--) {
+                    node = cellItem[rr][c] >= 0 ? addNode(node, o, cellItem[rr][c]) : node;
+                }
+                for (int rr = r + 1; rr < rowDim && colSegment[rr][c] == colSegment[r][c]; rr++) {
+                    node = cellItem[rr][c] >= 0 ? addNode(node, o, cellItem[rr][c]) : node;
+                }
+                node = r > 0 && pillarItem[r - 1][c] >= 0 ? addNode(node, o, pillarItem[r - 1][c]) : node;
+                node = r < rowDim - 1 && pillarItem[r + 1][c] >= 0 ? addNode(node, o, pillarItem[r + 1][c]) : node;
+                node = c > 0 && pillarItem[r][c - 1] >= 0 ? addNode(node, o, pillarItem[r][c - 1]) : node;
+                node = c < colDim - 1 && pillarItem[r][c + 1] >= 0 ? addNode(node, o, pillarItem[r][c + 1]) : node;
+                o++;
+            }
+        }
+        this.optionStart[o] = node;
+
+        this.trail = new int[16];
+        this.trailSize = 0;
+        this.chosen = new int[optionCount];
+        this.chosenSize = 0;
+    }
+
+    /**
+     * Append a node for an item to the bottom of the item's list.
+     *
+     * @param node the index of the new node
+     * @param o the option the node belongs to
+     * @param item the item the node covers
+     * @return the index of the next free node
+     */
+    private int addNode(int node, int o, int item) {
+        this.top[node] = item;
+        this.option[node] = o;
+        this.up[node] = this.up[item];
+        this.down[node] = item;
+        this.down[this.up[item]] = node;
+        this.up[item] = node;
+        this.len[item]++;
+        return node + 1;
+    }
+
+    /**
+     * The recursive search.  The options chosen on the way to a solution
+     * are left in chosen.
+     *
+     * @return true if a solution was found
+     */
+    private boolean search() {
+        this.nodes++;
+        if (this.right[this.root] == this.root) {
+            return true;
+        }
+        int item = chooseItem();
+        if (item < 0) {
+            return false;
+        }
+        int start = this.trailSize;
+        boolean found = false;
+        while (this.len[item] >= this.need[item] && this.down[item] != item) {
+            int o = this.option[this.down[item]];
+            int mark = this.trailSize;
+            select(o);
+            this.chosen[this.chosenSize++] = o;
+            if (search()) {
+                found = true;
+                break;
+            }
+            this.chosenSize--;
+            undoTo(mark);
+            // every later branch leaves this option out
+            hide(o);
+        }
+        if (!found) {
+            undoTo(start);
+        }
+        return found;
+    }
+
+    /**
+     * Pick the active primary item with the fewest options left.
+     *
+     * @return the item, or -1 if some item can no longer be covered
+     */
+    private int chooseItem() {
+        int best = -1;
+        for (int i = this.right[this.root]; i != this.root; i = this.right[i]) {
+            if (this.len[i] < this.need[i]) {
+                return -1;
+            }
+            if (best < 0 || this.len[i] < this.len[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Place the laser of an option: take the option out of the matrix,
+     * close both of its segments and count it towards its cells and
+     * pillars.
+     *
+     * @param o the option
+     */
+    private void select(int o) {
+        hide(o);
+        for (int x = this.optionStart[o]; x < this.optionStart[o + 1]; x++) {
+            int item = this.top[x];
+            if (this.kind[item] == SEGMENT) {
+                for (int y = this.down[item]; y != item; y = this.down[y]) {
+                    hide(this.option[y]);
+                }
+            } else {
+                this.need[item]--;
+                push(item, DECREMENT);
+                if (this.need[item] == 0) {
+                    this.right[this.left[item]] = this.right[item];
+                    this.left[this.right[item]] = this.left[item];
+                    push(item, DEACTIVATE);
+                    if (this.kind[item] == PILLAR) {
+                        for (int y = this.down[item]; y != item; y = this.down[y]) {
+                            hide(this.option[y]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Take every node of an option out of its item's list.
+     *
+     * @param o the option
+     */
+    private void hide(int o) {
+        for (int x = this.optionStart[o]; x < this.optionStart[o + 1]; x++) {
+            this.down[this.up[x]] = this.down[x];
+            this.up[this.down[x]] = this.up[x];
+            this.len[this.top[x]]--;
+        }
+        push(o, HIDE);
+    }
+
+    /**
+     * Undo the changes on the trail, newest first, down to a mark.
+     *
+     * @param mark the trail size to go back to
+     */
+    private void undoTo(int mark) {
+        while (this.trailSize > mark) {
+            this.trailSize--;
+            int value = this.trail[this.trailSize] >> 2;
+            switch (this.trail[this.trailSize] & 3) {
+                case HIDE:
+                    for (int x = this.optionStart[value + 1] - 1; x >= this.optionStart[value]; x--) {
+                        this.down[this.up[x]] = x;
+                        this.up[this.down[x]] = x;
+                        this.len[this.top[x]]++;
+                    }
+                    break;
+                case DECREMENT:
+                    this.need[value]++;
+                    break;
+                case DEACTIVATE:
+                    this.right[this.left[value]] = value;
+                    this.left[this.right[value]] = value;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Push a change onto the trail, growing it when it is full.
+     *
+     * @param value the option or item changed
+     * @param change HIDE, DECREMENT or DEACTIVATE
+     */
+    private void push(int value, int change) {
+        if (this.trailSize == this.trail.length) {
+            int[] bigger = new int[this.trail.length * 2];
+            System.arraycopy(this.trail, 0, bigger, 0, this.trailSize);
+            this.trail = bigger;
+        }
+        this.trail[this.trailSize++] = value << 2 | change;
+    }
+
+    private static boolean isPillar(String square) {
+        return square.equals("X") || Character.isDigit(square.charAt(0));
+    }
+
+    /**
+     * Count the lasers already next to a cell of a board.
+     */
+    private static int countLasers(String[][] board, int row, int col) {
+        int count = 0;
+        if (row > 0 && board[row - 1][col].equals("L")) {
+            count++;
+        }
+        if (row < board.length - 1 && board[row + 1][col].equals("L")) {
+            count++;
+        }
+        if (col > 0 && board[row][col - 1].equals("L")) {
+            count++;
+        }
+        if (col < board[row].length - 1 && board[row][col + 1].equals("L")) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Check whether a cell is next to a numbered pillar that already has
+     * all of its lasers, so no laser may go there.
+     */
+    private static boolean nextToSatisfiedPillar(String[][] board, int[][] pillarNeed, int row, int col) {
+        return (row > 0 && isNumbered(board[row - 1][col]) && pillarNeed[row - 1][col] <= 0)
+                || (row < board.length - 1 && isNumbered(board[row + 1][col]) && pillarNeed[row + 1][col] <= 0)
+                || (col > 0 && isNumbered(board[row][col - 1]) && pillarNeed[row][col - 1] <= 0)
+                || (col < board[row].length - 1 && isNumbered(board[row][col + 1]) && pillarNeed[row][col + 1] <= 0);
+    }
+
+    private static boolean isNumbered(String square) {
+        return Character.isDigit(square.charAt(0));
+    }
+
+    /**
+     * Count the unlit cells in the row and column segments of a cell,
+     * counting the cell itself twice, to size the node arrays.
+     */
+    private static int countSegmentCells(int[][] cellItem, int[][] rowSegment, int[][] colSegment,
+                                         int row, int col) {
+        int count = 0;
+        for (int c = 0; c < cellItem[row].length; c++) {
+            if (rowSegment[row][c] == rowSegment[row][col] && cellItem[row][c] >= 0) {
+                count++;
+            }
+        }
+        for (int r = 0; r < cellItem.length; r++) {
+            if (colSegment[r][col] == colSegment[row][col] && cellItem[r][col] >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,17 @@
+package lasers.backtracking;
+
+/**
+ * A configuration with a hash key, so the backtracker can remember
+ * configurations it has already searched.  Two configurations must get
+ * the same key whenever every search below them turns out the same.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public interface HashedConfiguration extends Configuration {
+    /**
+     * Get the hash key of the current configuration.
+     *
+     * @return the key
+     */
+    public long getHashKey();
+}
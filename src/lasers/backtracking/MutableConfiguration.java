@@ -0,0 +1,43 @@
+package lasers.backtracking;
+
+/**
+ * A configuration that can also be searched in place.  Instead of
+ * building a new configuration for every successor, the backtracker
+ * applies one move at a time to a single configuration, explores it,
+ * and then undoes the move again.
+ *
+ * The moves at a configuration are numbered 0 to getMoveCount() - 1
+ * and must be tried in the same order getSuccessors() returns the
+ * matching successors, so both searches find the same solution.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public interface MutableConfiguration extends Configuration {
+    /**
+     * Get the number of moves that can be applied to the current
+     * configuration.
+     *
+     * @return the number of moves, 0 if there are no successors
+     */
+    public int getMoveCount();
+
+    /**
+     * Apply a move, turning this configuration into that successor.
+     *
+     * @param move the number of the move, from 0 to getMoveCount() - 1
+     */
+    public void apply(int move);
+
+    /**
+     * Undo the last move that was applied and not yet undone.
+     */
+    public void undo();
+
+    /**
+     * Make an independent copy of the current configuration, so a
+     * goal can be kept after the search undoes its moves.
+     *
+     * @return the copy
+     */
+    public Configuration copy();
+}
@@ -0,0 +1,177 @@
+package lasers.backtracking;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class runs the backtracking algorithm on a fork/join pool.
+ * The valid successors of the first few levels of the search tree are
+ * turned into tasks, which idle workers steal from each other.  Below
+ * the split depth each task searches its subtree on its own.  As soon
+ * as one task finds a goal every other task stops at its next node.
+ *
+ * Which solution is found first depends on the scheduling, so it may
+ * differ from the one the sequential Backtracker finds.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class ParallelBacktracker {
+
+    /** the split depth used when none is given */
+    public static final int DEFAULT_SPLIT_DEPTH = 10;
+
+    private int parallelism;
+    private int splitDepth;
+
+    /**
+     * Initialize a parallel backtracker that uses every core.
+     */
+    public ParallelBacktracker() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * Initialize a parallel backtracker.
+     *
+     * @param parallelism the number of worker threads
+     * @param splitDepth the number of levels whose successors become tasks
+     */
+    public ParallelBacktracker(int parallelism, int splitDepth) {
+        this.parallelism = parallelism;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     * The worker threads only live for the one solve.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or Optional.empty() if no solution
+     */
+    public Optional<Configuration> solve(Configuration config) {
+        AtomicReference<Configuration> goal = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            pool.invoke(new SearchTask(config, 0, goal));
+        } finally {
+            pool.shutdownNow();
+        }
+        return Optional.ofNullable(goal.get());
+    }
+
+    /**
+     * The task that searches the subtree below one configuration.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Configuration config;
+        private int depth;
+        /** the first goal found by any task, shared by the whole solve */
+        private AtomicReference<Configuration> goal;
+
+        SearchTask(Configuration config, int depth, AtomicReference<Configuration> goal) {
+            this.config = config;
+            this.depth = depth;
+            this.goal = goal;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.goal.get() != null) {
+                return;
+            }
+            if (this.depth >= splitDepth) {
+                if (this.config instanceof MutableConfiguration) {
+                    // the task owns its config, so it can be searched in place
+                    searchInPlace((MutableConfiguration) this.config);
+                } else {
+                    search(this.config);
+                }
+                return;
+            }
+            if (this.config.isGoal()) {
+                this.goal.compareAndSet(null, this.config);
+                return;
+            }
+            List<SearchTask> tasks = new ArrayList<>();
+            for (Configuration child : this.config.getSuccessors()) {
+                if (child.isValid()) {
+                    tasks.add(new SearchTask(child, this.depth + 1, this.goal));
+                }
+            }
+            // fork the later subtrees for stealing, search the first one here
+            for (int i = tasks.size() - 1; i > 0; i--) {
+                tasks.get(i).fork();
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                if (this.goal.get() != null) {
+                    for (int j = i; j < tasks.size(); j++) {
+                        tasks.get(j).cancel(false);
+                    }
+                    return;
+                }
+                if (i == 0) {
+                    tasks.get(i).compute();
+                } else {
+                    tasks.get(i).join();
+                }
+            }
+        }
+
+        /**
+         * Search a subtree by copying successors, stopping early once
+         * any task has found a goal.
+         *
+         * @param current the root of the subtree
+         * @return true if this search found the goal
+         */
+        private boolean search(Configuration current) {
+            if (this.goal.get() != null) {
+                return false;
+            }
+            if (current.isGoal()) {
+                return this.goal.compareAndSet(null, current);
+            }
+            Iterator<Configuration> successors = current.successorIterator();
+            while (successors.hasNext()) {
+                Configuration child = successors.next();
+                if (child.isValid() && search(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Search a subtree by applying and undoing moves, stopping early
+         * once any task has found a goal.
+         *
+         * @param current the root of the subtree
+         * @return true if this search found the goal
+         */
+        private boolean searchInPlace(MutableConfiguration current) {
+            if (this.goal.get() != null) {
+                return false;
+            }
+            if (current.isGoal()) {
+                return this.goal.compareAndSet(null, current.copy());
+            }
+            int moves = current.getMoveCount();
+            for (int move = 0; move < moves; move++) {
+                current.apply(move);
+                boolean found = current.isValid() && searchInPlace(current);
+                current.undo();
+                if (found) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
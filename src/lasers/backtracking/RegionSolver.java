@@ -0,0 +1,305 @@
+package lasers.backtracking;
+
+import lasers.model.CellOrder;
+import lasers.model.SafeConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * This class splits a safe into independent regions before solving it.
+ * Two cells are in the same region if a beam can pass between them, so
+ * a laser in one would light or see the other, or if they are both next
+ * to the same numbered pillar.  A laser in one region never lights a
+ * cell of another region or counts for another region's pillars, so
+ * each region can be solved on its own and the solutions put together.
+ * For a sparse board with many regions this turns the product of their
+ * search trees into a sum.
+ *
+ * Each region is cut out of the board with the pillars around it, every
+ * cell of another region in its way becomes a plain pillar, and the
+ * region is solved on a fork/join pool by the engine it was given.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class RegionSolver {
+
+    /** the row and col offsets of the four neighbours of a cell */
+    private static final int[] NEIGHBOUR_ROWS = {-1, 1, 0, 0};
+    private static final int[] NEIGHBOUR_COLS = {0, 0, -1, 1};
+
+    private int parallelism;
+    private Function<SafeConfig, Optional<Configuration>> engine;
+    private boolean propagation;
+    private CellOrder order;
+    private int regionCount;
+
+    /**
+     * Initialize a region solver.
+     *
+     * @param parallelism the number of regions solved at once
+     * @param engine the engine that solves each region; it is called
+     *               from several threads at once
+     * @param propagation whether the regions' configs propagate around
+     *                    the numbered pillars
+     * @param order the policy the regions' configs pick cells by
+     */
+    public RegionSolver(int parallelism, Function<SafeConfig, Optional<Configuration>> engine,
+                        boolean propagation, CellOrder order) {
+        this.parallelism = parallelism;
+        this.engine = engine;
+        this.propagation = propagation;
+        this.order = order;
+    }
+
+    /**
+     * Get the number of regions the last safe was split into.
+     *
+     * @return the region count
+     */
+    public int getRegionCount() {
+        return this.regionCount;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a safe.  The worker
+     * threads only live for the one solve.
+     *
+     * @param board the safe, in the same form as LasersModel.getBoard()
+     * @return A solution config of the whole safe, or Optional.empty() if no solution
+     */
+    public Optional<Configuration> solve(String[][] board) {
+        List<Region> regions = split(board);
+        this.regionCount = regions.size();
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        List<Future<Optional<Configuration>>> solutions = new ArrayList<>();
+        for (Region region : regions) {
+            SafeConfig config = new SafeConfig(region.board, this.propagation, this.order);
+            solutions.add(pool.submit(() -> this.engine.apply(config)));
+        }
+
+        String[][] solved = new String[board.length][];
+        for (int r = 0; r < board.length; r++) {
+            solved[r] = board[r].clone();
+        }
+        try {
+            for (int i = 0; i < regions.size(); i++) {
+                Optional<Configuration> sol = solutions.get(i).get();
+                if (!sol.isPresent()) {
+                    for (Future<Optional<Configuration>> other : solutions) {
+                        other.cancel(true);
+                    }
+                    return Optional.empty();
+                }
+                regions.get(i).copyInto(((SafeConfig) sol.get()).getBoard(), solved);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("A region could not be solved", e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // the whole board also checks the pillars that belong to no region
+        SafeConfig whole = new SafeConfig(solved, false, this.order);
+        return whole.isGoal() ? Optional.of(whole) : Optional.empty();
+    }
+
+    /**
+     * Split a safe into its independent regions.  A numbered pillar with
+     * no open neighbour belongs to no region.
+     *
+     * @param board the safe, in the same form as LasersModel.getBoard()
+     * @return the regions, each cut out of the board with its pillars
+     */
+    public static List<Region> split(String[][] board) {
+        int rowDim = board.length;
+        int colDim = rowDim == 0 ? 0 : board[0].length;
+        int[] parent = new int[rowDim * colDim];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+
+        // cells a beam can pass between
+        for (int r = 0; r < rowDim; r++) {
+            int start = -1;
+            for (int c = 0; c < colDim; c++) {
+                if (isPillar(board[r][c])) {
+                    start = -1;
+                } else if (start < 0) {
+                    start = r * colDim + c;
+                } else {
+                    union(parent, start, r * colDim + c);
+                }
+            }
+        }
+        for (int c = 0; c < colDim; c++) {
+            int start = -1;
+            for (int r = 0; r < rowDim; r++) {
+                if (isPillar(board[r][c])) {
+                    start = -1;
+                } else if (start < 0) {
+                    start = r * colDim + c;
+                } else {
+                    union(parent, start, r * colDim + c);
+                }
+            }
+        }
+        // cells next to the same numbered pillar
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (isNumbered(board[r][c])) {
+                    int first = -1;
+                    for (int i = 0; i < NEIGHBOUR_ROWS.length; i++) {
+                        int rr = r + NEIGHBOUR_ROWS[i];
+                        int cc = c + NEIGHBOUR_COLS[i];
+                        if (rr >= 0 && rr < rowDim && cc >= 0 && cc < colDim && !isPillar(board[rr][cc])) {
+                            if (first < 0) {
+                                first = rr * colDim + cc;
+                            } else {
+                                union(parent, first, rr * colDim + cc);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // the bounds of each region, by the cell at its root
+        List<Region> regions = new ArrayList<>();
+        Region[] byRoot = new Region[parent.length];
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (!isPillar(board[r][c])) {
+                    int root = find(parent, r * colDim + c);
+                    if (byRoot[root] == null) {
+                        byRoot[root] = new Region(root, r, c);
+                        regions.add(byRoot[root]);
+                    }
+                    byRoot[root].include(r, c);
+                }
+            }
+        }
+        for (Region region : regions) {
+            region.cut(board, parent);
+        }
+        return regions;
+    }
+
+    private static int find(int[] parent, int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    private static boolean isPillar(String square) {
+        return square.equals("X") || Character.isDigit(square.charAt(0));
+    }
+
+    private static boolean isNumbered(String square) {
+        return Character.isDigit(square.charAt(0));
+    }
+
+    /**
+     * One independent region of a safe, cut out of the board.
+     */
+    public static class Region {
+        private int root;
+        /** the bounds of the region's cells */
+        private int minRow;
+        private int maxRow;
+        private int minCol;
+        private int maxCol;
+        /** where the cut out board sits on the whole board */
+        private int top;
+        private int left;
+        private String[][] board;
+
+        Region(int root, int row, int col) {
+            this.root = root;
+            this.minRow = row;
+            this.maxRow = row;
+            this.minCol = col;
+            this.maxCol = col;
+        }
+
+        /**
+         * Get the region cut out of the whole board, with the pillars
+         * around it.  Cells of other regions are plain pillars, and so
+         * are numbered pillars that are not next to the region.
+         *
+         * @return the region's board
+         */
+        public String[][] getBoard() {
+            return this.board;
+        }
+
+        private void include(int row, int col) {
+            this.minRow = Math.min(this.minRow, row);
+            this.maxRow = Math.max(this.maxRow, row);
+            this.minCol = Math.min(this.minCol, col);
+            this.maxCol = Math.max(this.maxCol, col);
+        }
+
+        /**
+         * Cut the region out of the board.  Its cells run up to a pillar
+         * or the edge of the board in every direction, so one more row
+         * and column on each side holds every pillar it touches.
+         */
+        private void cut(String[][] whole, int[] parent) {
+            int colDim = whole[0].length;
+            this.top = Math.max(0, this.minRow - 1);
+            this.left = Math.max(0, this.minCol - 1);
+            int bottom = Math.min(whole.length - 1, this.maxRow + 1);
+            int right = Math.min(colDim - 1, this.maxCol + 1);
+            this.board = new String[bottom - this.top + 1][right - this.left + 1];
+            for (int r = this.top; r <= bottom; r++) {
+                for (int c = this.left; c <= right; c++) {
+                    String square = whole[r][c];
+                    boolean mine;
+                    if (isNumbered(square)) {
+                        mine = false;
+                        for (int i = 0; i < NEIGHBOUR_ROWS.length; i++) {
+                            int rr = r + NEIGHBOUR_ROWS[i];
+                            int cc = c + NEIGHBOUR_COLS[i];
+                            mine |= rr >= 0 && rr < whole.length && cc >= 0 && cc < colDim
+                                    && !isPillar(whole[rr][cc]) && find(parent, rr * colDim + cc) == this.root;
+                        }
+                    } else {
+                        mine = square.equals("X") || find(parent, r * colDim + c) == this.root;
+                    }
+                    this.board[r - this.top][c - this.left] = mine ? square : "X";
+                }
+            }
+        }
+
+        /**
+         * Copy the region's cells from its solution onto the whole board.
+         */
+        private void copyInto(String[][] solution, String[][] whole) {
+            for (int r = 0; r < solution.length; r++) {
+                for (int c = 0; c < solution[r].length; c++) {
+                    String square = whole[r + this.top][c + this.left];
+                    if (!isPillar(square) && !isPillar(this.board[r][c])) {
+                        whole[r + this.top][c + this.left] = solution[r][c];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,44 +1,237 @@
 package lasers.backtracking;
 
+import lasers.model.CellOrder;
 import lasers.model.SafeConfig;
 
 import java.io.FileNotFoundException;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * This is the main class for a safe solver.  It runs the backtracking
  * algorithm and displays the solution, if one exists.
  *
+ * The options after the debug flag select how the search is run:<br>
+ *     -inplace: apply and undo moves on one config instead of copying<br>
+ *     -iterative: search in place with an explicit stack instead of recursion<br>
+ *     -parallel[=threads]: split the search over a fork/join pool<br>
+ *     -nopropagate: turn off the forced moves around numbered pillars<br>
+ *     -order=policy: pick cells by column_major, pillar_first or most_constrained<br>
+ *     -engine=name: solve with the backtracker (default), dlx (Dancing Links)
+ *     or sat (CNF and the embedded CDCL solver)<br>
+ *     -tt=entries: let the backtracker skip refuted configs it has seen<br>
+ *     -count=limit: count the solutions instead, stopping at limit
+ *     (2 checks that the solution is unique); only the sequential
+ *     backtracker counts<br>
+ *     -timeout=millis, -maxnodes=n: stop the backtracker once it has run
+ *     this long or looked at this many configs; the other engines, -parallel
+ *     and -regions cannot be stopped, so these are refused with them<br>
+ *     -stats[=json]: print what the backtracker did, as a summary or as JSON<br>
+ *     -regions[=threads]: split the safe into independent regions and solve
+ *     them at once with the chosen engine<br>
+ *
  * @author RIT CS
  */
 public class SafeSolver {
     public static void main(String[] args) throws FileNotFoundException {
-        if (args.length != 2) {
-            System.out.println("Usage: java SafeSolver safe.in debug");
+        if (args.length < 2) {
+            System.out.println("Usage: java SafeSolver safe.in debug [-inplace] [-iterative] [-parallel[=threads]] [-nopropagate] [-order=policy]" +
+                    " [-engine=backtracker|dlx|sat]" +
+                    " [-tt=entries] [-count=limit] [-timeout=millis] [-maxnodes=n]" +
+                    " [-stats[=json]] [-regions[=threads]]");
         } else {
-            // construct the initial configuration from the file
-            Configuration init = new SafeConfig(args[0]);
-
             // create the backtracker with the debug flag
             boolean debug = args[1].equals("true");
             Backtracker bt = new Backtracker(debug);
 
+            boolean inPlace = false;
+            boolean iterative = false;
+            boolean propagation = true;
+            CellOrder order = CellOrder.COLUMN_MAJOR;
+            int threads = 0;
+            int regionThreads = 0;
+            String engine = "backtracker";
+            TranspositionTable table = null;
+            long limit = 0;
+            boolean budget = false;
+            SolveOptions options = new SolveOptions();
+            bt.setOptions(options);
+            SearchStats stats = null;
+            boolean json = false;
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("-inplace")) {
+                    inPlace = true;
+                } else if (args[i].equals("-iterative")) {
+                    iterative = true;
+                } else if (args[i].equals("-parallel")) {
+                    threads = Runtime.getRuntime().availableProcessors();
+                } else if (args[i].startsWith("-parallel=")) {
+                    threads = Integer.parseInt(args[i].substring("-parallel=".length()));
+                } else if (args[i].equals("-regions")) {
+                    regionThreads = Runtime.getRuntime().availableProcessors();
+                } else if (args[i].startsWith("-regions=")) {
+                    regionThreads = Integer.parseInt(args[i].substring("-regions=".length()));
+                } else if (args[i].equals("-nopropagate")) {
+                    propagation = false;
+                } else if (args[i].equals("-stats") || args[i].equals("-stats=json")) {
+                    stats = new SearchStats();
+                    json = args[i].equals("-stats=json");
+                    bt.setStats(stats);
+                } else if (args[i].startsWith("-timeout=")) {
+                    options.setTimeoutMillis(Long.parseLong(args[i].substring("-timeout=".length())));
+                    budget = true;
+                } else if (args[i].startsWith("-maxnodes=")) {
+                    options.setMaxNodes(Long.parseLong(args[i].substring("-maxnodes=".length())));
+                    budget = true;
+                } else if (args[i].startsWith("-count=")) {
+                    limit = Long.parseLong(args[i].substring("-count=".length()));
+                } else if (args[i].startsWith("-tt=")) {
+                    table = new TranspositionTable(Integer.parseInt(args[i].substring("-tt=".length())));
+                    bt.setTranspositionTable(table);
+                } else if (args[i].startsWith("-engine=")) {
+                    engine = args[i].substring("-engine=".length());
+                    if (!engine.equals("backtracker") && !engine.equals("dlx")
+                            && !engine.equals("sat")) {
+                        System.out.println("Unknown engine: " + engine);
+                        return;
+                    }
+                } else if (args[i].startsWith("-order=")) {
+                    try {
+                        order = CellOrder.valueOf(args[i].substring("-order=".length()).toUpperCase());
+                    } catch (IllegalArgumentException iae) {
+                        System.out.println("Unknown order: " + args[i]);
+                        return;
+                    }
+                } else {
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+            // only the sequential backtracker can be stopped
+            boolean sequential = engine.equals("backtracker") && threads == 0 && regionThreads == 0;
+            if (budget && !sequential) {
+                System.out.println("-timeout and -maxnodes only work with the sequential backtracker," +
+                        " not with -engine=dlx|sat, -parallel or -regions");
+                return;
+            }
+            if (limit > 0 && !sequential) {
+                System.out.println("-count only works with the sequential backtracker," +
+                        " not with -engine=dlx|sat, -parallel or -regions");
+                return;
+            }
+
+            // construct the initial configuration from the file
+            long setup = System.nanoTime();
+            SafeConfig init = new SafeConfig(args[0], propagation, order);
+            if (stats != null) {
+                stats.addPhase("setup", System.nanoTime() - setup);
+            }
+
             // start the clock
             double start = System.currentTimeMillis();
+            long searchStart = System.nanoTime();
+
+            if (limit > 0) {
+                long count = bt.countSolutions(init, limit);
+                long searchNanos = System.nanoTime() - searchStart;
+                System.out.println("Elapsed time: " +
+                        (System.currentTimeMillis() - start)/1000.0 + " seconds.");
+                System.out.println("Nodes: " + bt.getNodeCount());
+                if (bt.getOutcome() == Backtracker.Outcome.BUDGET_EXCEEDED) {
+                    System.out.println("Budget exceeded after " + count + " solutions!");
+                } else if (count >= limit) {
+                    System.out.println("Solutions: at least " + count);
+                } else {
+                    System.out.println("Solutions: " + count);
+                }
+                if (limit >= 2 && count == 1) {
+                    System.out.println("The solution is unique.");
+                }
+                printStats(stats, json, searchNanos);
+                return;
+            }
 
             // attempt to solve the puzzle
-            Optional<Configuration> sol = bt.solve(init);
+            Optional<Configuration> sol;
+            long nodes = -1;
+            if (regionThreads > 0) {
+                RegionSolver regions = new RegionSolver(regionThreads, regionEngine(engine),
+                        propagation, order);
+                sol = regions.solve(init.getBoard());
+                System.out.println("Regions: " + regions.getRegionCount());
+            } else if (engine.equals("dlx")) {
+                DancingLinks dlx = new DancingLinks();
+                sol = dlx.solve(init);
+                nodes = dlx.getNodeCount();
+            } else if (engine.equals("sat")) {
+                SatEngine sat = new SatEngine();
+                sol = sat.solve(init);
+                nodes = sat.getDecisionCount();
+            } else if (threads > 0) {
+                ParallelBacktracker pbt = new ParallelBacktracker(threads,
+                        ParallelBacktracker.DEFAULT_SPLIT_DEPTH);
+                sol = pbt.solve(init);
+            } else if (iterative) {
+                sol = bt.solveIterative(init);
+                nodes = bt.getNodeCount();
+            } else if (inPlace) {
+                sol = bt.solveInPlace(init);
+                nodes = bt.getNodeCount();
+            } else {
+                sol = bt.solve(init);
+                nodes = bt.getNodeCount();
+            }
 
             // compute the elapsed time
+            long searchNanos = System.nanoTime() - searchStart;
             System.out.println("Elapsed time: " +
                     (System.currentTimeMillis() - start)/1000.0 + " seconds.");
+            if (nodes >= 0) {
+                System.out.println("Nodes: " + nodes);
+            }
+            if (table != null) {
+                System.out.println(table);
+            }
+            printStats(stats, json, searchNanos);
 
             // indicate whether there was a solution, or not
             if (sol.isPresent()) {
                 System.out.println("Solution:\n" + sol.get());
+            } else if (sequential && bt.getOutcome() == Backtracker.Outcome.BUDGET_EXCEEDED) {
+                System.out.println("Budget exceeded!");
             } else {
                 System.out.println("No solution!");
             }
         }
     }
+
+    /**
+     * Print the backtracker's stats, if they were asked for.
+     *
+     * @param stats the stats, or null if there are none
+     * @param json true to print them as JSON, false as a summary
+     * @param searchNanos the time the search took
+     */
+    private static void printStats(SearchStats stats, boolean json, long searchNanos) {
+        if (stats != null) {
+            stats.addPhase("search", searchNanos);
+            System.out.println(json ? stats.toJson() : stats.toString());
+        }
+    }
+
+    /**
+     * Get an engine that solves each region on its own, so regions can
+     * be solved on several threads at once.
+     *
+     * @param engine the name of the engine
+     * @return the engine
+     */
+    private static Function<SafeConfig, Optional<Configuration>> regionEngine(String engine) {
+        if (engine.equals("dlx")) {
+            return config -> new DancingLinks().solve(config);
+        } else if (engine.equals("sat")) {
+            return config -> new SatEngine().solve(config);
+        }
+        return config -> new Backtracker(false).solveInPlace(config);
+    }
 }
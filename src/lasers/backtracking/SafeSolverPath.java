@@ -1,21 +1,29 @@
 package lasers.backtracking;
 
 import lasers.model.SafeConfig;
+import lasers.model.SafePath;
 
 import java.io.FileNotFoundException;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * This is the main class for a safe solver with a path.  It runs the
  * backtracking algorithm and displays the full path of the solution,
  * step by step, if one exists.
  *
+ * With -moves after the debug flag, the path is kept as the starting
+ * safe and the (row, col) of each laser added to it, and each step's
+ * board is only built when it is printed.
+ *
  * @author RIT CS
  */
 public class SafeSolverPath {
     public static void main(String[] args) throws FileNotFoundException {
-        if (args.length != 2) {
-            System.out.println("Usage: java SafeSolverPath safe.in debug");
+        if (args.length != 2 && (args.length != 3 || !args[2].equals("-moves"))) {
+            System.out.println("Usage: java SafeSolverPath safe.in debug [-moves]");
+        } else if (args.length == 3) {
+            solveWithMoves(args[0], args[1].equals("true"));
         } else {
             // construct the initial configuration from the file
             Configuration init = new SafeConfig(args[0]);
@@ -48,4 +56,48 @@ public class SafeSolverPath {
             }
         }
     }
+
+    /**
+     * Solve a safe and display its path as a list of moves, building
+     * the board of each step from the one before it as it is printed.
+     *
+     * @param filename the safe to solve
+     * @param debug Is debugging output enabled?
+     * @throws FileNotFoundException if the safe cannot be read
+     */
+    private static void solveWithMoves(String filename, boolean debug) throws FileNotFoundException {
+        SafeConfig init = new SafeConfig(filename);
+        Backtracker bt = new Backtracker(debug);
+
+        // start the clock
+        double start = System.currentTimeMillis();
+
+        // attempt to solve the puzzle, keeping only its moves; the path
+        // starts from the safe as given, so the lasers propagation forced
+        // before the search are shown as moves too
+        Optional<Configuration> sol = bt.solveInPlace(init);
+        SafePath path = sol.isPresent()
+                ? new SafePath(new SafeConfig(filename, false), (SafeConfig) sol.get()) : null;
+
+        // compute the elapsed time
+        System.out.println("Elapsed time: " +
+                (System.currentTimeMillis() - start)/1000.0 + " seconds.");
+
+        // indicate whether there was a solution, or not
+        if (path != null) {
+            int step = 0;
+            for (Configuration config : path) {
+                if (step == 0) {
+                    System.out.println("Step 0:");
+                } else {
+                    System.out.println("Step " + step + ": laser at (" + path.getRow(step - 1)
+                            + ", " + path.getCol(step - 1) + ")");
+                }
+                System.out.println(config);
+                ++step;
+            }
+        } else {
+            System.out.println("No solution!");
+        }
+    }
 }
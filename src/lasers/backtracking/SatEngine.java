@@ -0,0 +1,286 @@
+package lasers.backtracking;
+
+import lasers.model.SafeConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * This class solves a safe by encoding it into CNF and handing it to
+ * the embedded CdclSolver, as an engine next to the Backtracker for the
+ * biggest and hardest safes.
+ *
+ * There is one variable per open cell, true when the cell holds a
+ * laser.  The clauses say that
+ *   - each row and column segment (a maximal run of cells between
+ *     pillars) holds at most one laser, pairwise for short segments and
+ *     with a sequential counter for long ones,
+ *   - each unlit cell has a laser somewhere in its row or column
+ *     segment, and
+ *   - each numbered pillar has exactly as many lasers next to it as its
+ *     number, by ruling out every subset of its neighbours that is too
+ *     big or leaves too few.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SatEngine {
+
+    /** segments longer than this get a sequential counter instead of pairs */
+    private static final int PAIRWISE_LIMIT = 4;
+
+    private long decisions;
+    private long conflicts;
+
+    /**
+     * Get the number of decisions in the last solve.
+     *
+     * @return the decision count
+     */
+    public long getDecisionCount() {
+        return this.decisions;
+    }
+
+    /**
+     * Get the number of conflicts in the last solve.
+     *
+     * @return the conflict count
+     */
+    public long getConflictCount() {
+        return this.conflicts;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given safe.
+     *
+     * @param config the safe, with any lasers it already holds
+     * @return A solution config, or Optional.empty() if no solution
+     */
+    public Optional<Configuration> solve(SafeConfig config) {
+        this.decisions = 0;
+        this.conflicts = 0;
+        if (!config.isValid()) {
+            return Optional.empty();
+        }
+        String[][] board = config.getBoard();
+        int rowDim = config.getRowDim();
+        int colDim = config.getColDim();
+
+        // one variable per cell that could still take a laser
+        int[][] var = new int[rowDim][colDim];
+        int vars = 0;
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (board[r][c].equals(".") && !nextToSatisfiedPillar(board, r, c)) {
+                    var[r][c] = ++vars;
+                }
+            }
+        }
+        int cellVars = vars;
+        List<int[]> clauses = new ArrayList<>();
+
+        // at most one laser per segment
+        for (int r = 0; r < rowDim; r++) {
+            List<Integer> segment = new ArrayList<>();
+            for (int c = 0; c <= colDim; c++) {
+                if (c == colDim || isPillar(board[r][c])) {
+                    vars = atMostOne(segment, clauses, vars);
+                    segment.clear();
+                } else if (var[r][c] > 0) {
+                    segment.add(var[r][c]);
+                }
+            }
+        }
+        for (int c = 0; c < colDim; c++) {
+            List<Integer> segment = new ArrayList<>();
+            for (int r = 0; r <= rowDim; r++) {
+                if (r == rowDim || isPillar(board[r][c])) {
+                    vars = atMostOne(segment, clauses, vars);
+                    segment.clear();
+                } else if (var[r][c] > 0) {
+                    segment.add(var[r][c]);
+                }
+            }
+        }
+
+        // every unlit cell is lit from its row or its column
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (!board[r][c].equals(".")) {
+                    continue;
+                }
+                List<Integer> lighting = new ArrayList<>();
+                for (int cc = c; cc >= 0 && !isPillar(board[r][cc]); cc--) {
+                    addVar(lighting, var[r][cc]);
+                }
+                for (int cc = c + 1; cc < colDim && !isPillar(board[r][cc]); cc++) {
+                    addVar(lighting, var[r][cc]);
+                }
+                for (int rr = r - 1; rr >= 0 && !isPillar(board[rr][c]); rr--) {
+                    addVar(lighting, var[rr][c]);
+                }
+                for (int rr = r + 1; rr < rowDim && !isPillar(board[rr][c]); rr++) {
+                    addVar(lighting, var[rr][c]);
+                }
+                clauses.add(toArray(lighting));
+            }
+        }
+
+        // every numbered pillar gets exactly its number of lasers
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (!isPillar(board[r][c]) || board[r][c].equals("X")) {
+                    continue;
+                }
+                List<Integer> neighbours = new ArrayList<>();
+                int lasers = 0;
+                int[][] offsets = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+                for (int[] offset : offsets) {
+                    int rr = r + offset[0];
+                    int cc = c + offset[1];
+                    if (rr >= 0 && rr < rowDim && cc >= 0 && cc < colDim) {
+                        lasers += board[rr][cc].equals("L") ? 1 : 0;
+                        addVar(neighbours, var[rr][cc]);
+                    }
+                }
+                exactly(Integer.parseInt(board[r][c]) - lasers, neighbours, clauses);
+            }
+        }
+
+        CdclSolver solver = new CdclSolver(vars);
+        for (int[] clause : clauses) {
+            solver.addClause(clause);
+        }
+        boolean satisfiable = solver.solve();
+        this.decisions = solver.getDecisionCount();
+        this.conflicts = solver.getConflictCount();
+        if (!satisfiable) {
+            return Optional.empty();
+        }
+
+        SafeConfig solution = config;
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (var[r][c] > 0 && var[r][c] <= cellVars && solver.value(var[r][c])
+                        && !solution.hasLaser(r, c)) {
+                    solution = new SafeConfig(solution, r, c, true);
+                }
+            }
+        }
+        return solution.isGoal() ? Optional.of(solution) : Optional.empty();
+    }
+
+    /**
+     * Add clauses saying at most one of the variables is true.
+     *
+     * @param literals the variables
+     * @param clauses the clauses to add to
+     * @param vars the number of variables used so far
+     * @return the number of variables used, with any new counter variables
+     */
+    private static int atMostOne(List<Integer> literals, List<int[]> clauses, int vars) {
+        int size = literals.size();
+        if (size <= PAIRWISE_LIMIT) {
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    clauses.add(new int[]{-literals.get(i), -literals.get(j)});
+                }
+            }
+            return vars;
+        }
+        // s_i is true when one of the first i variables is true
+        int first = vars + 1;
+        clauses.add(new int[]{-literals.get(0), first});
+        for (int i = 1; i < size - 1; i++) {
+            int s = first + i;
+            clauses.add(new int[]{-literals.get(i), s});
+            clauses.add(new int[]{-(s - 1), s});
+            clauses.add(new int[]{-literals.get(i), -(s - 1)});
+        }
+        clauses.add(new int[]{-literals.get(size - 1), -(first + size - 2)});
+        return vars + size - 1;
+    }
+
+    /**
+     * Add clauses saying exactly need of the variables are true.
+     *
+     * @param need the number that must be true
+     * @param literals the variables, at most four of them
+     * @param clauses the clauses to add to
+     */
+    private static void exactly(int need, List<Integer> literals, List<int[]> clauses) {
+        int size = literals.size();
+        if (need < 0 || need > size) {
+            clauses.add(new int[0]);
+            return;
+        }
+        for (int subset = 0; subset < 1 << size; subset++) {
+            int bits = Integer.bitCount(subset);
+            if (bits == need + 1) {
+                // not all of these can be true
+                clauses.add(subsetClause(literals, subset, -1));
+            }
+            if (bits == size - need + 1) {
+                // not all of these can be false
+                clauses.add(subsetClause(literals, subset, 1));
+            }
+        }
+    }
+
+    private static int[] subsetClause(List<Integer> literals, int subset, int sign) {
+        int[] clause = new int[Integer.bitCount(subset)];
+        int n = 0;
+        for (int i = 0; i < literals.size(); i++) {
+            if ((subset & 1 << i) != 0) {
+                clause[n++] = sign * literals.get(i);
+            }
+        }
+        return clause;
+    }
+
+    private static void addVar(List<Integer> literals, int var) {
+        if (var > 0) {
+            literals.add(var);
+        }
+    }
+
+    private static int[] toArray(List<Integer> literals) {
+        int[] array = new int[literals.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = literals.get(i);
+        }
+        return array;
+    }
+
+    private static boolean isPillar(String square) {
+        return square.equals("X") || Character.isDigit(square.charAt(0));
+    }
+
+    /**
+     * Check whether a cell is next to a numbered pillar that already has
+     * all of its lasers, so no laser may go there.
+     */
+    private static boolean nextToSatisfiedPillar(String[][] board, int row, int col) {
+        int[][] offsets = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        for (int[] offset : offsets) {
+            int r = row + offset[0];
+            int c = col + offset[1];
+            if (r >= 0 && r < board.length && c >= 0 && c < board[r].length
+                    && Character.isDigit(board[r][c].charAt(0))) {
+                int lasers = 0;
+                for (int[] around : offsets) {
+                    int rr = r + around[0];
+                    int cc = c + around[1];
+                    if (rr >= 0 && rr < board.length && cc >= 0 && cc < board[rr].length
+                            && board[rr][cc].equals("L")) {
+                        lasers++;
+                    }
+                }
+                if (lasers >= Integer.parseInt(board[r][c])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,209 @@
+package lasers.backtracking;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counters that a Backtracker fills in as it searches, once they are
+ * given to it with setStats().  A backtracker without stats only pays
+ * a null check per node, so they can be left off without cost and
+ * turned on for any run.
+ *
+ * Besides the search counters, the time spent in each named phase of a
+ * run (reading the safe, searching, ...) can be added by the caller.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SearchStats {
+
+    /** the number of depths the histogram makes room for at first */
+    private static final int INITIAL_DEPTHS = 64;
+
+    private long nodes;
+    private long expanded;
+    private long generated;
+    private long rejected;
+    private int maxDepth;
+    /** the number of nodes at each depth */
+    private long[] depthCounts;
+    /** the nanoseconds spent in each phase, in the order they were added */
+    private Map<String, Long> phases;
+
+    /**
+     * Initialize empty stats.
+     */
+    public SearchStats() {
+        this.depthCounts = new long[INITIAL_DEPTHS];
+        this.phases = new LinkedHashMap<>();
+    }
+
+    /**
+     * Count a node the search has reached, which is then checked for
+     * being a goal.
+     *
+     * @param depth how far below the root the node is
+     */
+    void recordNode(int depth) {
+        this.nodes++;
+        if (depth >= this.depthCounts.length) {
+            this.depthCounts = Arrays.copyOf(this.depthCounts,
+                    Math.max(2 * this.depthCounts.length, depth + 1));
+        }
+        this.depthCounts[depth]++;
+        if (depth > this.maxDepth) {
+            this.maxDepth = depth;
+        }
+    }
+
+    /**
+     * Count a node whose successors the search is about to generate.
+     */
+    void recordExpansion() {
+        this.expanded++;
+    }
+
+    /**
+     * Count a successor the search generated.
+     *
+     * @param valid whether it passed isValid()
+     */
+    void recordSuccessor(boolean valid) {
+        this.generated++;
+        if (!valid) {
+            this.rejected++;
+        }
+    }
+
+    /**
+     * Add time spent in a phase of the run.
+     *
+     * @param name the name of the phase
+     * @param nanos the time spent, in nanoseconds
+     */
+    public void addPhase(String name, long nanos) {
+        this.phases.merge(name, nanos, Long::sum);
+    }
+
+    /**
+     * Get the number of nodes reached, each of which got one goal check.
+     *
+     * @return the node count
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Get the number of goal checks.
+     *
+     * @return the goal check count
+     */
+    public long getGoalChecks() {
+        return this.nodes;
+    }
+
+    /**
+     * Get the number of nodes whose successors were generated.
+     *
+     * @return the expanded node count
+     */
+    public long getExpanded() {
+        return this.expanded;
+    }
+
+    /**
+     * Get the number of successors generated.
+     *
+     * @return the successor count
+     */
+    public long getGenerated() {
+        return this.generated;
+    }
+
+    /**
+     * Get the number of successors isValid() rejected.
+     *
+     * @return the rejected successor count
+     */
+    public long getRejected() {
+        return this.rejected;
+    }
+
+    /**
+     * Get the deepest depth reached.
+     *
+     * @return the maximum depth
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Get the number of nodes reached at each depth.
+     *
+     * @return the counts, from depth 0 to getMaxDepth()
+     */
+    public long[] getDepthHistogram() {
+        return Arrays.copyOf(this.depthCounts, this.nodes == 0 ? 0 : this.maxDepth + 1);
+    }
+
+    /**
+     * Get the time spent in a phase.
+     *
+     * @param name the name of the phase
+     * @return the time in nanoseconds, 0 if there is no such phase
+     */
+    public long getPhaseNanos(String name) {
+        return this.phases.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Write the stats out as a JSON object.
+     *
+     * @return the JSON text, on one line
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"nodes\":").append(this.nodes)
+                .append(",\"expanded\":").append(this.expanded)
+                .append(",\"generated\":").append(this.generated)
+                .append(",\"rejected\":").append(this.rejected)
+                .append(",\"goalChecks\":").append(this.nodes)
+                .append(",\"maxDepth\":").append(this.maxDepth)
+                .append(",\"depthHistogram\":[");
+        long[] histogram = getDepthHistogram();
+        for (int depth = 0; depth < histogram.length; depth++) {
+            json.append(depth == 0 ? "" : ",").append(histogram[depth]);
+        }
+        json.append("],\"phaseMillis\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> phase : this.phases.entrySet()) {
+            json.append(separator).append('"').append(phase.getKey()).append("\":")
+                    .append(phase.getValue() / 1e6);
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Nodes: ").append(this.nodes)
+                .append("\nExpanded: ").append(this.expanded)
+                .append("\nSuccessors: ").append(this.generated)
+                .append(" generated, ").append(this.rejected).append(" rejected")
+                .append("\nGoal checks: ").append(this.nodes)
+                .append("\nMax depth: ").append(this.maxDepth)
+                .append("\nNodes by depth:");
+        long[] histogram = getDepthHistogram();
+        for (int depth = 0; depth < histogram.length; depth++) {
+            summary.append(depth % 10 == 0 ? "\n  " + depth + ":" : "").append(' ').append(histogram[depth]);
+        }
+        for (Map.Entry<String, Long> phase : this.phases.entrySet()) {
+            summary.append("\n").append(phase.getKey()).append(" time: ")
+                    .append(phase.getValue() / 1e6).append(" ms");
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,289 @@
+package lasers.backtracking;
+
+import lasers.model.CellOrder;
+import lasers.model.SafeConfig;
+import lasers.model.Symmetry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A cache of solved safes, keyed by a hash of the safe's contents so
+ * the same safe is found again under any file name.  Safes are turned
+ * into their canonical form first, and solutions are kept in that
+ * form, so a rotated or mirrored safe finds the solution too.
+ *
+ * The cache has two tiers.  The newest solutions are kept in memory,
+ * up to a fixed number, and the least recently used one is evicted to
+ * make room.  Every solution is also written to its own file in a
+ * directory, so it outlives the process.  A file only holds the
+ * dimensions and one bit per cell for where the lasers go; the beams
+ * are worked out again when it is read.  A file is only trusted once
+ * its lasers have been put on the safe and found to solve it, and a
+ * file that does not is deleted.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SolutionCache {
+
+    /** the first four bytes of every solution file, "LSC1" */
+    private static final int MAGIC = 0x4C534331;
+    /** the extension of the solution files */
+    private static final String EXTENSION = ".sol";
+
+    private Map<String, String[][]> memory;
+    private Path directory;
+
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+    private long rejected;
+
+    /**
+     * Initialize a cache.
+     *
+     * @param capacity the most solutions kept in memory
+     * @param directory where the solution files go, or null to keep
+     *                  solutions in memory only
+     */
+    public SolutionCache(int capacity, Path directory) {
+        this.directory = directory;
+        this.memory = new LinkedHashMap<String, String[][]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String[][]> eldest) {
+                if (size() > capacity) {
+                    SolutionCache.this.evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the key of a safe: a SHA-256 hash of its dimensions and cells.
+     * Beams are left out, since they follow from the lasers.
+     *
+     * @param board the safe, in the same form as LasersModel.getBoard()
+     * @return the key, as 64 hex digits
+     */
+    public static String key(String[][] board) {
+        StringBuilder text = new StringBuilder();
+        text.append(board.length).append(' ').append(board.length == 0 ? 0 : board[0].length);
+        for (String[] row : board) {
+            text.append('\n');
+            for (String square : row) {
+                text.append(square.equals("*") ? "." : square);
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(text.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is not available", nsae);
+        }
+    }
+
+    /**
+     * Look up the solution of a safe, in memory and then on disk.
+     *
+     * @param board the safe, in the same form as LasersModel.getBoard()
+     * @return the solved board, or Optional.empty() if it is not cached
+     */
+    public synchronized Optional<String[][]> get(String[][] board) {
+        Symmetry symmetry = Symmetry.canonical(board);
+        String[][] canonical = symmetry.apply(board);
+        String key = key(canonical);
+        String[][] solved = this.memory.get(key);
+        if (solved != null) {
+            this.hits++;
+            return Optional.of(symmetry.inverse().apply(solved));
+        }
+        if (this.directory != null) {
+            solved = load(key, canonical);
+            if (solved != null) {
+                this.diskHits++;
+                this.memory.put(key, solved);
+                return Optional.of(symmetry.inverse().apply(solved));
+            }
+        }
+        this.misses++;
+        return Optional.empty();
+    }
+
+    /**
+     * Add the solution of a safe, in memory and on disk.  A solution
+     * that cannot be written to disk is still kept in memory.
+     *
+     * @param board the safe, in the same form as LasersModel.getBoard()
+     * @param solution the solved board
+     */
+    public synchronized void put(String[][] board, String[][] solution) {
+        Symmetry symmetry = Symmetry.canonical(board);
+        String key = key(symmetry.apply(board));
+        String[][] canonical = symmetry.apply(solution);
+        this.memory.put(key, canonical);
+        if (this.directory != null) {
+            try {
+                store(key, canonical);
+            } catch (IOException ioe) {
+                // the solution is still in memory
+            }
+        }
+    }
+
+    /**
+     * Read a solution file and check that it solves the safe.
+     *
+     * @param key the safe's key
+     * @param board the safe, in its canonical form
+     * @return the solved board, or null if there is no good file
+     */
+    private String[][] load(String key, String[][] board) {
+        Path file = this.directory.resolve(key + EXTENSION);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int rowDim = board.length;
+            int colDim = rowDim == 0 ? 0 : board[0].length;
+            if (in.readInt() != MAGIC || in.readShort() != rowDim || in.readShort() != colDim) {
+                return reject(file);
+            }
+            byte[] bits = new byte[(rowDim * colDim + 7) / 8];
+            in.readFully(bits);
+            String[][] lasers = new String[rowDim][colDim];
+            for (int r = 0; r < rowDim; r++) {
+                for (int c = 0; c < colDim; c++) {
+                    int cell = r * colDim + c;
+                    boolean laser = (bits[cell / 8] & (1 << (cell % 8))) != 0;
+                    String square = board[r][c];
+                    if (square.equals("X") || Character.isDigit(square.charAt(0))) {
+                        if (laser) {
+                            return reject(file);
+                        }
+                        lasers[r][c] = square;
+                    } else if (square.equals("L") && !laser) {
+                        return reject(file);
+                    } else {
+                        lasers[r][c] = laser ? "L" : ".";
+                    }
+                }
+            }
+            SafeConfig solved = new SafeConfig(lasers, false, CellOrder.COLUMN_MAJOR);
+            return solved.isValid() && solved.isGoal() ? solved.getBoard() : reject(file);
+        } catch (IOException ioe) {
+            return reject(file);
+        }
+    }
+
+    /**
+     * Write a solution file, by way of a temporary file so a reader
+     * never sees half of it.
+     */
+    private void store(String key, String[][] solution) throws IOException {
+        Files.createDirectories(this.directory);
+        int rowDim = solution.length;
+        int colDim = rowDim == 0 ? 0 : solution[0].length;
+        byte[] bits = new byte[(rowDim * colDim + 7) / 8];
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                if (solution[r][c].equals("L")) {
+                    int cell = r * colDim + c;
+                    bits[cell / 8] |= 1 << (cell % 8);
+                }
+            }
+        }
+        Path temp = Files.createTempFile(this.directory, key, ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(rowDim);
+            out.writeShort(colDim);
+            out.write(bits);
+        }
+        Files.move(temp, this.directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Throw away a solution file that does not solve its safe.
+     */
+    private String[][] reject(Path file) {
+        this.rejected++;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ioe) {
+            // it will be rejected again next time
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of lookups answered from memory.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of lookups answered from disk.
+     *
+     * @return the disk hit count
+     */
+    public synchronized long getDiskHits() {
+        return this.diskHits;
+    }
+
+    /**
+     * Get the number of lookups that found nothing.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the number of solutions evicted from memory.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the number of solution files thrown away for not solving their safe.
+     *
+     * @return the rejected file count
+     */
+    public synchronized long getRejected() {
+        return this.rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Solution cache: " + this.hits + " hits, " + this.diskHits + " disk hits, "
+                + this.misses + " misses, " + this.evictions + " evictions, " + this.rejected + " rejected";
+    }
+}
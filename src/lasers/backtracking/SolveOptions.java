@@ -0,0 +1,81 @@
+package lasers.backtracking;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The limits a Backtracker search runs under: a wall-clock time limit,
+ * a most number of nodes and a cancel token that another thread can
+ * set.  A search that runs into any of them stops and reports that its
+ * budget was exceeded, rather than that there is no solution.
+ *
+ * The limits are counted from the start of each search, so one options
+ * object can be used for many searches.  Zero means no limit.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SolveOptions {
+
+    private long timeoutMillis;
+    private long maxNodes;
+    private AtomicBoolean cancelToken;
+
+    /**
+     * Initialize options with no limits and no cancel token.
+     */
+    public SolveOptions() {
+    }
+
+    /**
+     * Set how long a search may run.
+     *
+     * @param timeoutMillis the time limit in milliseconds, 0 for none
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Get how long a search may run.
+     *
+     * @return the time limit in milliseconds, 0 for none
+     */
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    /**
+     * Set how many configurations a search may look at.
+     *
+     * @param maxNodes the node limit, 0 for none
+     */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Get how many configurations a search may look at.
+     *
+     * @return the node limit, 0 for none
+     */
+    public long getMaxNodes() {
+        return this.maxNodes;
+    }
+
+    /**
+     * Set the token that stops a search once it is set to true.
+     *
+     * @param cancelToken the token, or null for none
+     */
+    public void setCancelToken(AtomicBoolean cancelToken) {
+        this.cancelToken = cancelToken;
+    }
+
+    /**
+     * Get the token that stops a search once it is set to true.
+     *
+     * @return the token, or null for none
+     */
+    public AtomicBoolean getCancelToken() {
+        return this.cancelToken;
+    }
+}
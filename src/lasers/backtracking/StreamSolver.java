@@ -0,0 +1,314 @@
+package lasers.backtracking;
+
+import lasers.model.CellOrder;
+import lasers.model.SafeParser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is the main class for solving one long stream of safes, such as
+ * a file holding many of them or standard input, without reading the
+ * whole stream first.  It is a pipeline of three stages:<br>
+ *     parse: one thread reads the next safe with a SafeParser<br>
+ *     solve: a pool of workers solves each safe with the Backtracker<br>
+ *     emit: the main thread writes each result, in the order the safes
+ *     came in<br>
+ *
+ * The stages are joined by bounded queues.  A safe is queued for the
+ * emitter, in order, before it is handed to the workers, and the parser
+ * waits when that queue is full, so no more than -queue safes are held
+ * at once however long the stream is.  A safe that is slow to solve
+ * holds back the results after it, but not the workers.
+ *
+ * The options select:<br>
+ *     -threads=n: the number of workers (default: one per processor)<br>
+ *     -queue=n: the most safes read but not yet written (default: 4 per worker)<br>
+ *     -format=csv|jsonl: the result format (default: csv)<br>
+ *     -out=file: write the results to a file instead of standard output<br>
+ *     -order=policy: pick cells by column_major, pillar_first or most_constrained<br>
+ *     -timeout=millis: give up on a safe after this long<br>
+ *
+ * Each result has the same form as in BatchSolver, with the safes named
+ * stream#n.  A safe that stops part way, or a stream that does not start
+ * with one, ends the stream, since there is no telling where the next
+ * safe starts; it is written as an error result and its line and column
+ * are printed to standard error.  The stream also ends at the first line
+ * after a safe that does not start with a number, such as the notes after
+ * the board in the tests directory; that is not a result, but its line
+ * is printed to standard error.  At the end the
+ * throughput of each stage is printed to standard error, with the time
+ * it spent waiting on the stages around it, so the slowest stage shows.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class StreamSolver {
+
+    /** the safes allowed in flight per worker, unless -queue says */
+    private static final int QUEUE_PER_WORKER = 4;
+
+    /** marks the end of a queue */
+    private static final Job END = new Job(null, null);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java StreamSolver safes.txt|- [-threads=n] [-queue=n] [-format=csv|jsonl]" +
+                    " [-out=file] [-order=policy] [-timeout=millis]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = 0;
+        boolean json = false;
+        String out = null;
+        CellOrder order = CellOrder.COLUMN_MAJOR;
+        long timeout = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("-threads=")) {
+                threads = Integer.parseInt(args[i].substring("-threads=".length()));
+            } else if (args[i].startsWith("-queue=")) {
+                queue = Integer.parseInt(args[i].substring("-queue=".length()));
+            } else if (args[i].equals("-format=csv") || args[i].equals("-format=jsonl")) {
+                json = args[i].equals("-format=jsonl");
+            } else if (args[i].startsWith("-out=")) {
+                out = args[i].substring("-out=".length());
+            } else if (args[i].startsWith("-timeout=")) {
+                timeout = Long.parseLong(args[i].substring("-timeout=".length()));
+            } else if (args[i].startsWith("-order=")) {
+                try {
+                    order = CellOrder.valueOf(args[i].substring("-order=".length()).toUpperCase());
+                } catch (IllegalArgumentException iae) {
+                    System.out.println("Unknown order: " + args[i]);
+                    return;
+                }
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+        if (queue <= 0) {
+            queue = QUEUE_PER_WORKER * threads;
+        }
+
+        String name = args[0].equals("-") ? "stdin" : args[0];
+        InputStream in = args[0].equals("-") ? System.in : new FileInputStream(args[0]);
+        PrintStream results = out == null ? System.out : new PrintStream(out);
+        if (!json) {
+            results.println("file,status,millis,nodes");
+        }
+
+        BlockingQueue<Job> pending = new ArrayBlockingQueue<>(queue);
+        BlockingQueue<Job> work = new ArrayBlockingQueue<>(queue);
+        Stage parse = new Stage();
+        Stage solve = new Stage();
+        Stage emit = new Stage();
+        long start = System.nanoTime();
+
+        int workerCount = threads;
+        Thread parser = new Thread(() -> parse(name, in, workerCount, pending, work, parse), "parser");
+        parser.start();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            CellOrder solveOrder = order;
+            long solveTimeout = timeout;
+            workers.execute(() -> solve(work, solveOrder, solveTimeout, solve));
+        }
+
+        int[] counts = new int[BatchSolver.Status.values().length];
+        try {
+            while (true) {
+                long waiting = System.nanoTime();
+                Job job = pending.take();
+                if (job == END) {
+                    break;
+                }
+                BatchSolver.Result result = job.done.join();
+                long working = System.nanoTime();
+                counts[result.status.ordinal()]++;
+                results.println(json ? result.toJson() : result.toCsv());
+                results.flush();
+                emit.add(System.nanoTime() - working, working - waiting);
+            }
+        } finally {
+            workers.shutdown();
+            if (results != System.out) {
+                results.close();
+            }
+        }
+        parser.join();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long safes = emit.count.get();
+        System.err.printf("%d safes in %.3f seconds: %d solved, %d unsolved, %d timeout, %d error%n",
+                safes, seconds, counts[BatchSolver.Status.SOLVED.ordinal()],
+                counts[BatchSolver.Status.UNSOLVED.ordinal()], counts[BatchSolver.Status.TIMEOUT.ordinal()],
+                counts[BatchSolver.Status.ERROR.ordinal()]);
+        System.err.println(parse.report("parse", 1, "room in the queue"));
+        System.err.println(solve.report("solve", threads, "safes to solve"));
+        System.err.println(emit.report("emit", 1, "results"));
+        System.err.printf("Throughput: %.2f puzzles/sec%n", safes / seconds);
+    }
+
+    /**
+     * The parse stage: read each safe and queue it, first for the
+     * emitter and then for the workers.
+     *
+     * @param name the name of the stream
+     * @param in the stream
+     * @param threads the number of workers, each of which is sent an END
+     * @param pending the safes in the order they came in, for the emitter
+     * @param work the safes for the workers
+     * @param stage the parse stage's counts
+     */
+    private static void parse(String name, InputStream in, int threads, BlockingQueue<Job> pending,
+                              BlockingQueue<Job> work, Stage stage) {
+        SafeParser parser = new SafeParser(in);
+        try {
+            for (int index = 0; ; index++) {
+                long working = System.nanoTime();
+                Job job;
+                try {
+                    // a stream that does not start with a safe is an error
+                    if (!parser.hasNext() && (index > 0 || parser.isAtEnd())) {
+                        if (!parser.isAtEnd()) {
+                            System.err.println(name + ": line " + parser.getLine()
+                                    + " does not start a safe, the rest is left unread");
+                        }
+                        break;
+                    }
+                    job = new Job(name + "#" + index, parser.next());
+                } catch (IOException ioe) {
+                    System.err.println(name + ": " + ioe.getMessage());
+                    job = new Job(name + "#" + index, null);
+                }
+                long waiting = System.nanoTime();
+                pending.put(job);
+                if (job.board == null) {
+                    BatchSolver.Result result = new BatchSolver.Result();
+                    result.file = job.name;
+                    result.status = BatchSolver.Status.ERROR;
+                    job.done.complete(result);
+                    break;
+                }
+                work.put(job);
+                stage.add(waiting - working, System.nanoTime() - waiting);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ioe) {
+                // every safe in it has been read
+            }
+            try {
+                pending.put(END);
+                for (int i = 0; i < threads; i++) {
+                    work.put(END);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The solve stage, run by each worker: solve safes until the END.
+     *
+     * @param work the safes for the workers
+     * @param order the policy the config picks cells by
+     * @param timeout the time limit in milliseconds, 0 for none
+     * @param stage the solve stage's counts, shared by the workers
+     */
+    private static void solve(BlockingQueue<Job> work, CellOrder order, long timeout, Stage stage) {
+        try {
+            while (true) {
+                long waiting = System.nanoTime();
+                Job job = work.take();
+                if (job == END) {
+                    return;
+                }
+                long working = System.nanoTime();
+                BatchSolver.Result result = new BatchSolver.Result();
+                result.file = job.name;
+                result.status = BatchSolver.Status.ERROR;
+                try {
+                    BatchSolver.solve(job.board, "backtracker", order, timeout, null, result);
+                } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+                    // a board too big for the stack or the heap is an
+                    // error result, and the worker carries on
+                    result.status = BatchSolver.Status.ERROR;
+                } finally {
+                    // the emitter waits on every safe, so it always gets a result
+                    long finished = System.nanoTime();
+                    result.millis = (finished - working) / 1e6;
+                    job.board = null;
+                    stage.add(finished - working, working - waiting);
+                    job.done.complete(result);
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A safe on its way through the pipeline.
+     */
+    private static class Job {
+        final String name;
+        String[][] board;
+        final CompletableFuture<BatchSolver.Result> done = new CompletableFuture<>();
+
+        Job(String name, String[][] board) {
+            this.name = name;
+            this.board = board;
+        }
+    }
+
+    /**
+     * How many safes a stage has handled, the time it spent on them and
+     * the time it spent waiting on the other stages.
+     */
+    private static class Stage {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong waitNanos = new AtomicLong();
+
+        /**
+         * Count one safe.
+         *
+         * @param busy the nanoseconds spent on it
+         * @param wait the nanoseconds spent waiting on the other stages
+         */
+        void add(long busy, long wait) {
+            this.count.incrementAndGet();
+            this.busyNanos.addAndGet(busy);
+            this.waitNanos.addAndGet(wait);
+        }
+
+        /**
+         * Describe the stage.
+         *
+         * @param name the stage's name
+         * @param threads the threads running it
+         * @param waitedFor what it waits on
+         * @return one line for standard error
+         */
+        String report(String name, int threads, String waitedFor) {
+            double busy = this.busyNanos.get() / 1e9;
+            return String.format(Locale.ROOT,
+                    "%-5s %d safes, busy %.3f s on %d thread(s): %.2f safes/sec, waited %.3f s for %s",
+                    name + ":", this.count.get(), busy, threads,
+                    busy == 0 ? 0 : this.count.get() * threads / busy, this.waitNanos.get() / 1e9, waitedFor);
+        }
+    }
+}
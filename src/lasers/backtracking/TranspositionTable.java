@@ -0,0 +1,144 @@
+package lasers.backtracking;
+
+/**
+ * A fixed size table of configurations the backtracker has already
+ * searched without finding a goal, keyed by their hash keys.
+ *
+ * Each bucket has two entries.  The first is depth-preferred: it keeps
+ * whichever refuted configuration is closest to the root, since that
+ * one saves the biggest subtree.  The second always takes the newest
+ * configuration that did not win the first entry.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class TranspositionTable {
+
+    private long[] keys;
+    /** the depth of each entry plus one, 0 for an empty entry */
+    private int[] depths;
+    private int bucketMask;
+
+    private long hits;
+    private long misses;
+    private long stores;
+    private long evictions;
+
+    /**
+     * Initialize a table.
+     *
+     * @param capacity the most entries the table holds, rounded up to a
+     *                 power of two
+     */
+    public TranspositionTable(int capacity) {
+        int buckets = Integer.highestOneBit(Math.max(1, capacity / 2 - 1)) * 2;
+        this.keys = new long[2 * buckets];
+        this.depths = new int[2 * buckets];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Check whether a configuration is known to have no goal below it.
+     *
+     * @param key the configuration's hash key
+     * @return true if it was refuted before
+     */
+    public boolean isRefuted(long key) {
+        int slot = slot(key);
+        if ((this.depths[slot] != 0 && this.keys[slot] == key)
+                || (this.depths[slot + 1] != 0 && this.keys[slot + 1] == key)) {
+            this.hits++;
+            return true;
+        }
+        this.misses++;
+        return false;
+    }
+
+    /**
+     * Remember that a configuration has no goal below it.
+     *
+     * @param key the configuration's hash key
+     * @param depth how far below the root the configuration is
+     */
+    public void storeRefuted(long key, int depth) {
+        int slot = slot(key);
+        this.stores++;
+        if (this.depths[slot] != 0 && this.keys[slot] == key) {
+            this.depths[slot] = Math.min(this.depths[slot], depth + 1);
+        } else if (this.depths[slot] == 0 || depth < this.depths[slot] - 1) {
+            if (this.depths[slot] != 0) {
+                // the old depth-preferred entry moves down to the second entry
+                if (this.depths[slot + 1] != 0) {
+                    this.evictions++;
+                }
+                this.keys[slot + 1] = this.keys[slot];
+                this.depths[slot + 1] = this.depths[slot];
+            }
+            this.keys[slot] = key;
+            this.depths[slot] = depth + 1;
+        } else {
+            if (this.depths[slot + 1] != 0 && this.keys[slot + 1] != key) {
+                this.evictions++;
+            }
+            this.keys[slot + 1] = key;
+            this.depths[slot + 1] = depth + 1;
+        }
+    }
+
+    /**
+     * Get the number of lookups that found a refuted configuration.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of lookups that found nothing.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the number of refuted configurations stored.
+     *
+     * @return the store count
+     */
+    public long getStores() {
+        return this.stores;
+    }
+
+    /**
+     * Get the number of entries overwritten by a different configuration.
+     *
+     * @return the eviction count
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the number of entries the table holds.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Find the first entry of a key's bucket.
+     */
+    private int slot(long key) {
+        return 2 * ((int) (key ^ (key >>> 32)) & this.bucketMask);
+    }
+
+    @Override
+    public String toString() {
+        return "Transposition table: " + getCapacity() + " entries, " + this.hits + " hits, "
+                + this.misses + " misses, " + this.stores + " stores, " + this.evictions + " evictions";
+    }
+}
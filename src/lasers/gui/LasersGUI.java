@@ -205,7 +205,9 @@ public class LasersGUI extends Application implements Observer<LasersModel, Mode
 
         try {
             if (safeFile != null) {
-
+                // the old safe's solver has nothing left to show
+                model.cancelSolve();
+                model.removeObserver(this);
                 model = new LasersModel(safeFile.getPath());
                 model.addObserver(this);
                 model.makeBoard();
@@ -259,10 +261,13 @@ public class LasersGUI extends Application implements Observer<LasersModel, Mode
         check.setOnAction(event -> model.verify());
 
         Button solve = new Button("Solve");
-        solve.setOnAction(event -> model.solve());
+        Button cancel = new Button("Cancel");
+        cancel.setDisable(true);
+        cancel.setOnAction(event -> model.cancelSolve());
 
         Button restart = new Button("Restart");
         restart.setOnAction(event -> model.restart());
+        solve.setOnAction(event -> solve(solve, cancel, safeGridPane, check, restart));
 
         Button load = new Button("Load");
         load.setOnAction(event -> load(stage));
@@ -271,8 +276,9 @@ public class LasersGUI extends Application implements Observer<LasersModel, Mode
         buttonGridPane.setAlignment(Pos.CENTER);
         buttonGridPane.add(check, 0, 0);
         buttonGridPane.add(solve, 1, 0);
-        buttonGridPane.add(restart, 2, 0);
-        buttonGridPane.add(load, 3, 0);
+        buttonGridPane.add(cancel, 2, 0);
+        buttonGridPane.add(restart, 3, 0);
+        buttonGridPane.add(load, 4, 0);
         borderPane.setBottom(buttonGridPane);
         BorderPane.setAlignment(buttonGridPane, Pos.BOTTOM_CENTER);
 
@@ -283,6 +289,41 @@ public class LasersGUI extends Application implements Observer<LasersModel, Mode
         stage.setScene(scene);
     }
 
+    /**
+     * Solve the safe on a thread of its own, so the window stays live
+     * and the Cancel button can stop the solver.
+     *
+     * @param solve the Solve button, disabled while the solver runs
+     * @param cancel the Cancel button, enabled while the solver runs
+     * @param editors the tiles and buttons that change the board, which
+     *                are disabled while the solver runs
+     */
+    private void solve(Button solve, Button cancel, Node... editors) {
+        LasersModel solving = model;
+        solve.setDisable(true);
+        cancel.setDisable(false);
+        for (Node editor : editors) {
+            editor.setDisable(true);
+        }
+        statusMessage.setText("Solving " + solving.getSafeFilename() + "...");
+        Thread solver = new Thread(() -> {
+            try {
+                // the board only changes on the FX thread
+                solving.solve(Platform::runLater);
+            } finally {
+                Platform.runLater(() -> {
+                    solve.setDisable(false);
+                    cancel.setDisable(true);
+                    for (Node editor : editors) {
+                        editor.setDisable(false);
+                    }
+                });
+            }
+        }, "solver");
+        solver.setDaemon(true);
+        solver.start();
+    }
+
     @Override
     public void start(Stage stage) throws Exception {
         // TODO
@@ -298,6 +339,10 @@ public class LasersGUI extends Application implements Observer<LasersModel, Mode
      * @param card the card of the model
      */
     private void refresh(LasersModel model, ModelData data) {
+        // a safe that has been replaced by Load may still finish a solve
+        if (model != this.model) {
+            return;
+        }
 
         for (Node node : safeGridPane.getChildren()) {
             Tile tile = (Tile) node;
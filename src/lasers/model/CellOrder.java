@@ -0,0 +1,77 @@
+package lasers.model;
+
+/**
+ * The policies a SafeConfig can use to pick the next open cell to
+ * decide.  Every policy returns -1 exactly when no open cell is left,
+ * so they only change the order the search tries cells in, not the
+ * solutions it can find.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public enum CellOrder {
+
+    /** the first open cell in column order, the original search order */
+    COLUMN_MAJOR {
+        @Override
+        int nextCell(SafeConfig config) {
+            return config.firstOpenCell();
+        }
+    },
+
+    /**
+     * an open cell next to the first numbered pillar that still needs
+     * lasers, then column order
+     */
+    PILLAR_FIRST {
+        @Override
+        int nextCell(SafeConfig config) {
+            for (int pillar : config.numberedPillars()) {
+                if (config.missingLasers(pillar) > 0) {
+                    int cell = config.firstOpenNeighbour(pillar);
+                    if (cell >= 0) {
+                        return cell;
+                    }
+                }
+            }
+            return config.firstOpenCell();
+        }
+    },
+
+    /**
+     * the only open cell left that can light some blocked cell, then an
+     * open cell next to the pillar with the fewest spare open neighbours,
+     * then column order
+     */
+    MOST_CONSTRAINED {
+        @Override
+        int nextCell(SafeConfig config) {
+            int cell = config.soleLightingCell();
+            if (cell >= 0) {
+                return cell;
+            }
+            int bestSlack = Integer.MAX_VALUE;
+            for (int pillar : config.numberedPillars()) {
+                int need = config.missingLasers(pillar);
+                if (need > 0) {
+                    int slack = config.openNeighbours(pillar) - need;
+                    if (slack < bestSlack) {
+                        int neighbour = config.firstOpenNeighbour(pillar);
+                        if (neighbour >= 0) {
+                            bestSlack = slack;
+                            cell = neighbour;
+                        }
+                    }
+                }
+            }
+            return cell >= 0 ? cell : config.firstOpenCell();
+        }
+    };
+
+    /**
+     * Pick the next open cell to decide.
+     *
+     * @param config the config to pick from
+     * @return the cell index, or -1 if every cell is decided
+     */
+    abstract int nextCell(SafeConfig config);
+}
@@ -3,13 +3,18 @@ package lasers.model;
 import javafx.application.Application;
 import lasers.backtracking.Backtracker;
 import lasers.backtracking.Configuration;
+import lasers.backtracking.SolutionCache;
+import lasers.backtracking.SolveOptions;
 
 import java.io.*;
+import java.nio.file.Paths;
 import javax.swing.*;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The model of the lasers safe.  You are free to change this class however
@@ -19,17 +24,30 @@ import java.util.Optional;
  * @author Lukowski, Matthew and Muthuswamy, Vishnu
  */
 public class LasersModel {
+    /** how long solve() may search before it gives up, in milliseconds */
+    private static final long SOLVE_TIMEOUT_MILLIS = 10000;
+    /** the solutions solve() has found, kept across safes, and across runs
+     * in the directory named by the lasers.solutions property if it is set */
+    private static final SolutionCache SOLUTIONS = new SolutionCache(256,
+            System.getProperty("lasers.solutions") == null ? null
+                    : Paths.get(System.getProperty("lasers.solutions")));
+
     /** the observers who are registered with this model */
     private List<Observer<LasersModel, ModelData>> observers;
 
     private String safeFilename;
     private File safeFile;
-    private BufferedReader readSafeFile;
+    private InputStream readSafeFile;
 
     private int row;
     private int col;
 
     private String[][] board;
+    /** the beam segments of the board, which only move with the pillars */
+    private SegmentIndex segments;
+
+    /** set to stop a solve() that is running */
+    private AtomicBoolean solveCancelled;
 
     public LasersModel(String safeFilename) throws FileNotFoundException {
         this.observers = new LinkedList<>();
@@ -37,10 +55,11 @@ public class LasersModel {
         this.safeFilename = safeFilename;
         this.safeFile = new File(safeFilename);
         this.safeFilename = safeFile.getName();
-        this.readSafeFile = new BufferedReader(new FileReader(safeFile));
+        this.readSafeFile = new FileInputStream(safeFile);
 
         this.row = 0;
         this.col = 0;
+        this.solveCancelled = new AtomicBoolean();
     }
 
     /**
@@ -81,6 +100,15 @@ public class LasersModel {
         this.observers.add(observer);
     }
 
+    /**
+     * Remove an observer, so it is not told of any more changes.
+     *
+     * @param observer the observer
+     */
+    public void removeObserver(Observer<LasersModel, ModelData> observer) {
+        this.observers.remove(observer);
+    }
+
     /**
      * Notify observers the model has changed.
      *
@@ -93,53 +121,41 @@ public class LasersModel {
     }
 
     /**
-     * This function reads from the command line and gets the dimensions
-     * for the game board and also creates the game board based on
-     * the input file.
-     * @throws IOException
+     * This function reads the dimensions of the game board and the
+     * game board itself from the input file.
      */
     public void makeBoard() {
         try {
-            String[] line = this.readSafeFile.readLine().split(" ");
-            this.row = Integer.parseInt(line[0]);
-            this.col = Integer.parseInt(line[1]);
-            this.board = new String[this.row][this.col];
-            for (int r = 0; r < this.row; r++) {
-                line = this.readSafeFile.readLine().split(" ");
-                for (int c = 0; c < this.col; c++) {
-                    this.board[r][c] = line[c];
-                }
-            }
+            readBoard();
             notifyObservers(null);
-            readSafeFile.close();
+        } catch (SafeParseException spe) {
+            notifyObservers(new ModelData(ModelData.Status.ERROR_PARSING, safeFilename, spe.getLine(), spe.getColumn()));
         } catch (IOException ioe) {
             notifyObservers(new ModelData(ModelData.Status.ERROR_FNF, null, 0, 0));
         }
     }
 
     /**
-     * This function reads from the command line and gets the dimensions
-     * for the game board and also creates the game board based on
-     * the input file for the Safe Config.
-     * @throws IOException
+     * This function reads the dimensions of the game board and the
+     * game board itself from the input file for the Safe Config,
+     * without telling the observers.
+     * @throws IOException if the file cannot be read or is not a safe
      */
-    public void makeBoardSafeConfig() {
-        try {
-            String[] line = this.readSafeFile.readLine().split(" ");
-            this.row = Integer.parseInt(line[0]);
-            this.col = Integer.parseInt(line[1]);
-            this.board = new String[this.row][this.col];
-            for (int r = 0; r < this.row; r++) {
-                line = this.readSafeFile.readLine().split(" ");
-                for (int c = 0; c < this.col; c++) {
-                    this.board[r][c] = line[c];
-                }
-            }
-            readSafeFile.close();
-        } catch (IOException ioe) {
-            System.out.println(ioe.getMessage());
-            System.exit(-1);
+    public void makeBoardSafeConfig() throws IOException {
+        readBoard();
+    }
+
+    /**
+     * A helper function that parses the input file into the board.
+     * @throws IOException if the file cannot be read or is not a safe
+     */
+    private void readBoard() throws IOException {
+        try (InputStream in = this.readSafeFile) {
+            this.board = new SafeParser(in).next();
         }
+        this.row = this.board.length;
+        this.col = this.board[0].length;
+        this.segments = new SegmentIndex(this.board);
     }
 
     /**
@@ -185,32 +201,21 @@ public class LasersModel {
 
         this.board[rowCoordinate][colCoordinate] = "L";
 
-        for (int r = rowCoordinate + 1; r < this.row; r++) {
-            if (!this.board[r][colCoordinate].equals(".") &&
-                    !this.board[r][colCoordinate].equals("*")) {
-                break;
-            }
+        // the beams run to the ends of the laser's segments, or up to another laser
+        int bottom = this.segments.bottom(rowCoordinate, colCoordinate);
+        for (int r = rowCoordinate + 1; r <= bottom && !this.board[r][colCoordinate].equals("L"); r++) {
             this.board[r][colCoordinate] = "*";
         }
-        for (int r = rowCoordinate - 1; r >= 0; r--) {
-            if (!this.board[r][colCoordinate].equals(".") &&
-                    !this.board[r][colCoordinate].equals("*")) {
-                break;
-            }
+        int top = this.segments.top(rowCoordinate, colCoordinate);
+        for (int r = rowCoordinate - 1; r >= top && !this.board[r][colCoordinate].equals("L"); r--) {
             this.board[r][colCoordinate] = "*";
         }
-        for (int c = colCoordinate + 1; c < this.col; c++) {
-            if (!this.board[rowCoordinate][c].equals(".") &&
-                    !this.board[rowCoordinate][c].equals("*")) {
-                break;
-            }
+        int right = this.segments.right(rowCoordinate, colCoordinate);
+        for (int c = colCoordinate + 1; c <= right && !this.board[rowCoordinate][c].equals("L"); c++) {
             this.board[rowCoordinate][c] = "*";
         }
-        for (int c = colCoordinate - 1; c >= 0; c--) {
-            if (!this.board[rowCoordinate][c].equals(".") &&
-                    !this.board[rowCoordinate][c].equals("*")) {
-                break;
-            }
+        int left = this.segments.left(rowCoordinate, colCoordinate);
+        for (int c = colCoordinate - 1; c >= left && !this.board[rowCoordinate][c].equals("L"); c--) {
             this.board[rowCoordinate][c] = "*";
         }
 
@@ -445,6 +450,16 @@ public class LasersModel {
     public void verify() {
         int numOfAdjLasers;
 
+        int[] lasersInSegment = new int[this.segments.getSegmentCount()];
+        for (int r = 0; r < this.row; r++) {
+            for (int c = 0; c < this.col; c++) {
+                if (this.board[r][c].equals("L")) {
+                    lasersInSegment[this.segments.rowSegment(r, c)]++;
+                    lasersInSegment[this.segments.colSegment(r, c)]++;
+                }
+            }
+        }
+
         for (int r = 0; r < this.row; r++) {
             for (int c = 0; c < this.col; c++) {
                 if (this.board[r][c].equals(".")) {
@@ -492,41 +507,11 @@ public class LasersModel {
                     }
                 } else if (this.board[r][c].equals("L")) {
 
-                    for (int rowCoordinate = r + 1; rowCoordinate < this.row; rowCoordinate++) {
-                        if (!this.board[rowCoordinate][c].equals("L") &&
-                                !this.board[rowCoordinate][c].equals("*")) {
-                            break;
-                        } else if (this.board[rowCoordinate][c].equals("L")) {
-                            notifyObservers(new ModelData(ModelData.Status.ERROR_VERIFYING, null, r, c));
-                            return;
-                        }
-                    }
-                    for (int rowCoordinate = r - 1; rowCoordinate >= 0; rowCoordinate--) {
-                        if (!this.board[rowCoordinate][c].equals("L") &&
-                                !this.board[rowCoordinate][c].equals("*")) {
-                            break;
-                        } else if (this.board[rowCoordinate][c].equals("L")) {
-                            notifyObservers(new ModelData(ModelData.Status.ERROR_VERIFYING, null, r, c));
-                            return;
-                        }
-                    }
-                    for (int colCoordinate = c + 1; colCoordinate < this.col; colCoordinate++) {
-                        if (!this.board[r][colCoordinate].equals("L") &&
-                                !this.board[r][colCoordinate].equals("*")) {
-                            break;
-                        } else if (this.board[r][colCoordinate].equals("L")) {
-                            notifyObservers(new ModelData(ModelData.Status.ERROR_VERIFYING, null, r, c));
-                            return;
-                        }
-                    }
-                    for (int colCoordinate = c - 1; colCoordinate >= 0; colCoordinate--) {
-                        if (!this.board[r][colCoordinate].equals("L") &&
-                                !this.board[r][colCoordinate].equals("*")) {
-                            break;
-                        } else if (this.board[r][colCoordinate].equals("L")) {
-                            notifyObservers(new ModelData(ModelData.Status.ERROR_VERIFYING, null, r, c));
-                            return;
-                        }
+                    // two lasers see each other when they share a segment
+                    if (lasersInSegment[this.segments.rowSegment(r, c)] > 1 ||
+                            lasersInSegment[this.segments.colSegment(r, c)] > 1) {
+                        notifyObservers(new ModelData(ModelData.Status.ERROR_VERIFYING, null, r, c));
+                        return;
                     }
                 }
             }
@@ -583,24 +568,73 @@ public class LasersModel {
         return numOfAdjLasers;
     }
 
+    /**
+     * This function solves the safe, giving up after SOLVE_TIMEOUT_MILLIS
+     * or when cancelSolve() is called from another thread.  A solution
+     * replaces the board before the observers are told, so they show it
+     */
     public void solve() {
+        solve(Runnable::run);
+    }
+
+    /**
+     * This function solves the safe like solve(), but hands the change
+     * to the board and the telling of the observers to an executor, so
+     * a GUI can search on a thread of its own and still only have the
+     * board changed on its own thread
+     * @param publish - runs the change to the board and the notification
+     */
+    public void solve(Executor publish) {
+        this.solveCancelled.set(false);
         try {
-            Configuration safe = new SafeConfig(safeFile.getPath());
+            String[][] board = SafeParser.readBoard(safeFile.getPath());
+            Optional<String[][]> cached = SOLUTIONS.get(board);
+            if (cached.isPresent()) {
+                publish.execute(() -> {
+                    this.board = cached.get();
+                    notifyObservers(new ModelData(ModelData.Status.SOLUTION, safeFilename, 0, 0));
+                });
+                return;
+            }
+            Configuration safe = new SafeConfig(board, true, CellOrder.COLUMN_MAJOR);
+
+            SolveOptions options = new SolveOptions();
+            options.setTimeoutMillis(SOLVE_TIMEOUT_MILLIS);
+            options.setCancelToken(this.solveCancelled);
 
             Backtracker bt = new Backtracker(false);
+            bt.setOptions(options);
             Optional<Configuration> sol = bt.solve(safe);
 
             if (sol.isPresent()) {
-                System.out.print(sol);
-                notifyObservers(new ModelData(ModelData.Status.SOLUTION, safeFilename, 0, 0));
+                String[][] solved = ((SafeConfig) sol.get()).getBoard();
+                SOLUTIONS.put(board, solved);
+                publish.execute(() -> {
+                    this.board = solved;
+                    notifyObservers(new ModelData(ModelData.Status.SOLUTION, safeFilename, 0, 0));
+                });
+            } else if (bt.getOutcome() == Backtracker.Outcome.BUDGET_EXCEEDED) {
+                publish.execute(() ->
+                        notifyObservers(new ModelData(ModelData.Status.SOLVE_STOPPED, safeFilename, 0, 0)));
             } else {
-                notifyObservers(new ModelData(ModelData.Status.NO_SOLUTION, safeFilename, 0, 0));
+                publish.execute(() ->
+                        notifyObservers(new ModelData(ModelData.Status.NO_SOLUTION, safeFilename, 0, 0)));
             }
-        } catch (FileNotFoundException ffe) {
-            notifyObservers(new ModelData(ModelData.Status.ERROR_FNF, null, 0, 0));
+        } catch (SafeParseException spe) {
+            publish.execute(() -> notifyObservers(new ModelData(ModelData.Status.ERROR_PARSING, safeFilename,
+                    spe.getLine(), spe.getColumn())));
+        } catch (IOException ioe) {
+            publish.execute(() -> notifyObservers(new ModelData(ModelData.Status.ERROR_FNF, null, 0, 0)));
         }
     }
 
+    /**
+     * This function stops a solve() that is running on another thread
+     */
+    public void cancelSolve() {
+        this.solveCancelled.set(true);
+    }
+
     public void restart() {
         for (int r = 0; r < row; r++) {
             for (int c = 0; c < col; c++) {
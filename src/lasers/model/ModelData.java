@@ -17,11 +17,13 @@ public class ModelData {
         ERROR_REMOVING,
         ERROR_VERIFYING,
         ERROR_FNF,
+        ERROR_PARSING,
         NO_ERROR_ADDING,
         NO_ERROR_REMOVING,
         NO_ERROR_VERIFYING,
         SOLUTION,
         NO_SOLUTION,
+        SOLVE_STOPPED,
         RESTART
     }
 
@@ -79,6 +81,8 @@ public class ModelData {
             statusMessage = "Error verifying at: (" + row + ", " + col + ")";
         } else if (status == Status.ERROR_FNF) {
             statusMessage = "File cannot be found";
+        } else if (status == Status.ERROR_PARSING) {
+            statusMessage = safeFilename + " is not a safe, at line " + row + ", column " + col;
         } else if (status == Status.NO_ERROR_ADDING) {
             statusMessage = "Laser added at: (" + row + ", " + col + ")";
         } else if (status == Status.NO_ERROR_REMOVING) {
@@ -89,6 +93,8 @@ public class ModelData {
             statusMessage = safeFilename + " solved!";
         } else if (status == Status.NO_SOLUTION) {
             statusMessage = safeFilename + " has no solution!";
+        } else if (status == Status.SOLVE_STOPPED) {
+            statusMessage = safeFilename + " was not solved before the solver was stopped!";
         }else if (status == Status.RESTART) {
             statusMessage = safeFilename + " has been reset:";
         }
@@ -1,162 +1,544 @@
 package lasers.model;
 
 import lasers.backtracking.Configuration;
+import lasers.backtracking.HashedConfiguration;
+import lasers.backtracking.MutableConfiguration;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
 /**
  * The class represents a single configuration of a safe.  It is
  * used by the backtracker to generate successors, check for
  * validity, and eventually find the goal.
  *
- * This class is given to you here, but it will undoubtedly need to
- * communicate with the model.  You are free to move it into the lasers.model
- * package and/or incorporate it into another class.
+ * The board is stored as packed bit planes rather than a grid of
+ * strings.  Cell (r, c) is bit c * rowDim + r, so the cells are laid
+ * out column by column and a whole column is a contiguous run of bits.
+ * The pillar plane and the pillar demands never change during a search
+ * and are shared by every configuration; only the laser, beam and
+ * blocked planes are copied when a successor is made.
+ *
+ * Each successor decides the next open cell (not a pillar, not lit by
+ * a beam and not yet decided): either a laser is placed there, or the
+ * cell is blocked and has to be lit by a beam from some later laser.
+ * Which open cell comes next is up to the config's CellOrder, which is
+ * column order unless another one is given.
+ *
+ * Unless it is turned off, every decision is followed by propagation
+ * around the numbered pillars: a pillar with as many open neighbours as
+ * it still needs gets lasers on all of them, a satisfied pillar gets its
+ * open neighbours blocked, and a pillar that needs more lasers than it
+ * has open neighbours makes the config invalid straight away.
+ *
+ * Every config keeps count of the lasers next to each numbered pillar,
+ * of the pillars that do not have their number yet and of the cells
+ * that are not lit or holding a laser yet, all kept up to date as
+ * lasers are placed, so the goal test is just two counters at zero.
+ *
+ * Every config also keeps a Zobrist hash of what its placements left
+ * for the rest of the search: which cells are lit or hold a laser,
+ * which blocked cells still need a beam, and how many lasers each
+ * numbered pillar has.  Different placements that leave the same
+ * remaining puzzle get the same key, which is what a transposition
+ * table needs.
+ *
+ * A config can also be searched in place through MutableConfiguration.
+ * Every move pushes the cells it decided, forced and lit onto a trail,
+ * and undo clears exactly those bits again.
  *
  * @author RIT CS
  * @author Lukowski, Matthew and Muthuswamy, Vishnu
  */
-public class SafeConfig implements Configuration {
+public class SafeConfig implements MutableConfiguration, HashedConfiguration {
+
+    /** the number of cells packed into each word of a bit plane */
+    private static final int WORD_BITS = 64;
+    /** the demand stored for cells that are not numbered pillars */
+    private static final byte NO_DEMAND = -1;
+    /** the kinds of change recorded on the trail, in its lowest two bits */
+    private static final int LIT = 0;
+    private static final int LASER = 1;
+    private static final int BLOCK = 2;
+    /** the row and col offsets of the four neighbours of a cell */
+    private static final int[] NEIGHBOUR_ROWS = {-1, 1, 0, 0};
+    private static final int[] NEIGHBOUR_COLS = {0, 0, -1, 1};
+    /** the seed of the Zobrist keys, fixed so keys are the same every run */
+    private static final long ZOBRIST_SEED = 0x5AFEC0DEL;
 
-    private LasersModel model;
-    private int row;
     private int rowDim;
-    private int col;
     private int colDim;
-    private String[][] board;
+    /** the row and column of the cell decided last, -1 for the initial config */
+    private int row;
+    private int col;
+    /** whether a laser was placed at the cell decided last */
+    private boolean placed;
+
+    /** the cells holding pillars, shared by every config */
+    private long[] pillars;
+    /** the number of lasers each numbered pillar needs, shared by every config */
+    private byte[] demands;
+    /** the cells holding numbered pillars, shared by every config */
+    private int[] numbered;
+    /** where each cell is in numbered, -1 if it is not a numbered pillar, shared by every config */
+    private int[] slots;
+    /** the beam segments of the safe, shared by every config */
+    private SegmentIndex segments;
+    /** whether decisions are followed by pillar propagation */
+    private boolean propagation;
+    /** the policy that picks the next open cell, shared by every config */
+    private CellOrder order;
+    /** whether propagation found that this config cannot be solved */
+    private boolean failed;
+    /** the cells holding lasers */
+    private long[] lasers;
+    /** the cells lit by a laser beam */
+    private long[] beams;
+    /** the cells that were decided not to hold a laser */
+    private long[] blocked;
+    /** the lasers next to each numbered pillar, in the order of numbered */
+    private byte[] pillarLasers;
+    /** the numbered pillars that do not have as many lasers as they need */
+    private int unsatisfied;
+    /** the cells that are not pillars and are not lit or holding a laser */
+    private int uncovered;
 
     /**
-     * Constructor for the safe config
+     * the random Zobrist keys, shared by every config: one per cell for
+     * being covered, one per cell for being blocked and unlit, and five
+     * per cell for a numbered pillar holding 0 to 4 lasers
+     */
+    private long[] zobrist;
+    /** the Zobrist hash of the config */
+    private long key;
+
+    /** the changes made by the applied moves, as cell * 4 + kind, null until the first apply */
+    private int[] trail;
+    private int trailSize;
+    /** where each applied move starts on the trail */
+    private int[] frames;
+    /** the key before each applied move */
+    private long[] keys;
+    /** the cell each applied move decided, times 2, plus 1 for a laser */
+    private int[] decisions;
+    private int depth;
+
+    /**
+     * Constructor for the safe config, with pillar propagation
      * @param filename - name of the file
      * @throws FileNotFoundException
      */
     public SafeConfig(String filename) throws FileNotFoundException {
-        this.model = new LasersModel(filename);
-        this.model.makeBoardSafeConfig();
-        this.board = this.model.getBoard();
-        this.rowDim = this.model.getRowDim();
-        this.colDim = this.model.getColDim();
-        this.row = 0;
-        this.col = 0;
+        this(filename, true);
+    }
+
+    /**
+     * Constructor for the safe config
+     * @param filename - name of the file
+     * @param propagation - whether decisions are followed by pillar propagation
+     * @throws FileNotFoundException
+     */
+    public SafeConfig(String filename, boolean propagation) throws FileNotFoundException {
+        this(filename, propagation, CellOrder.COLUMN_MAJOR);
+    }
+
+    /**
+     * Constructor for the safe config
+     * @param filename - name of the file
+     * @param propagation - whether decisions are followed by pillar propagation
+     * @param order - the policy that picks the next open cell to decide
+     * @throws FileNotFoundException
+     */
+    public SafeConfig(String filename, boolean propagation, CellOrder order) throws FileNotFoundException {
+        this(readBoard(filename), propagation, order);
+    }
+
+    /**
+     * Constructor for the safe config from a board that is already
+     * loaded, in the same form as LasersModel.getBoard()
+     * @param board - the board, with any lasers and beams already on it
+     * @param propagation - whether decisions are followed by pillar propagation
+     * @param order - the policy that picks the next open cell to decide
+     */
+    public SafeConfig(String[][] board, boolean propagation, CellOrder order) {
+        this.rowDim = board.length;
+        this.colDim = board.length == 0 ? 0 : board[0].length;
+        this.row = -1;
+        this.col = -1;
+        this.propagation = propagation;
+        this.order = order;
+        this.segments = new SegmentIndex(board);
+
+        int words = (this.rowDim * this.colDim + WORD_BITS - 1) / WORD_BITS;
+        this.pillars = new long[words];
+        this.demands = new byte[this.rowDim * this.colDim];
+        this.lasers = new long[words];
+        this.beams = new long[words];
+        this.blocked = new long[words];
+        this.zobrist = new long[7 * this.rowDim * this.colDim];
+        Random random = new Random(ZOBRIST_SEED);
+        for (int i = 0; i < this.zobrist.length; i++) {
+            this.zobrist[i] = random.nextLong();
+        }
+
+        List<Integer> numberedCells = new LinkedList<>();
+        this.slots = new int[this.rowDim * this.colDim];
+        for (int c = 0; c < this.colDim; c++) {
+            for (int r = 0; r < this.rowDim; r++) {
+                int cell = index(r, c);
+                String square = board[r][c];
+                this.demands[cell] = NO_DEMAND;
+                this.slots[cell] = -1;
+                if (square.equals("X")) {
+                    set(this.pillars, cell);
+                } else if (Character.isDigit(square.charAt(0))) {
+                    set(this.pillars, cell);
+                    this.demands[cell] = (byte) Integer.parseInt(square);
+                    this.slots[cell] = numberedCells.size();
+                    numberedCells.add(cell);
+                    if (this.demands[cell] != 0) {
+                        this.unsatisfied++;
+                    }
+                } else {
+                    this.uncovered++;
+                }
+            }
+        }
+        this.numbered = new int[numberedCells.size()];
+        int n = 0;
+        for (int cell : numberedCells) {
+            this.numbered[n++] = cell;
+        }
+        this.pillarLasers = new byte[this.numbered.length];
+        // lasers already on the board fire once every pillar is known,
+        // and one that is already lit shares a segment with another
+        for (int r = 0; r < this.rowDim; r++) {
+            for (int c = 0; c < this.colDim; c++) {
+                if (board[r][c].equals("L")) {
+                    this.failed |= get(this.beams, index(r, c));
+                    placeLaser(r, c);
+                }
+            }
+        }
+        if (this.propagation && !this.failed) {
+            this.failed = !propagate();
+        }
+    }
 
+    /**
+     * Read a board from a file with a SafeParser
+     * @param filename - name of the file
+     * @return - the board
+     * @throws FileNotFoundException
+     * @throws IllegalArgumentException - if the file is not a safe
+     * @throws UncheckedIOException - if the file cannot be read
+     */
+    private static String[][] readBoard(String filename) throws FileNotFoundException {
+        try {
+            return SafeParser.readBoard(filename);
+        } catch (FileNotFoundException fnfe) {
+            throw fnfe;
+        } catch (SafeParseException spe) {
+            throw new IllegalArgumentException(filename + ": " + spe.getMessage(), spe);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
     }
 
     /**
      * The copied constructor used by getSuccessors()
      * @param other - the other SafeConfig
-     * @param row - the row coord
-     * @param col - the col coord
+     * @param row - the row coord of the cell to decide
+     * @param col - the col coord of the cell to decide
+     * @param placed - true to place a laser there, false to block it
+     */
+    public SafeConfig(SafeConfig other, int row, int col, boolean placed) {
+        this(other, row, col, placed, other.propagation);
+    }
+
+    /**
+     * The copied constructor, with a choice of whether to propagate
+     * afterwards.  SafePath replays its moves without propagation, so
+     * every step adds exactly one laser.
+     * @param other - the other SafeConfig
+     * @param row - the row coord of the cell to decide
+     * @param col - the col coord of the cell to decide
+     * @param placed - true to place a laser there, false to block it
+     * @param propagate - true to propagate around the numbered pillars
      */
-    public SafeConfig(SafeConfig other, int row, int col) {
+    SafeConfig(SafeConfig other, int row, int col, boolean placed, boolean propagate) {
+        this.rowDim = other.rowDim;
         this.colDim = other.colDim;
+        this.row = row;
+        this.col = col;
+        this.placed = placed;
+        this.pillars = other.pillars;
+        this.demands = other.demands;
+        this.numbered = other.numbered;
+        this.slots = other.slots;
+        this.propagation = other.propagation;
+        this.order = other.order;
+        this.zobrist = other.zobrist;
+        this.segments = other.segments;
+        this.key = other.key;
+        this.lasers = other.lasers.clone();
+        this.beams = other.beams.clone();
+        this.blocked = other.blocked.clone();
+        this.pillarLasers = other.pillarLasers.clone();
+        this.unsatisfied = other.unsatisfied;
+        this.uncovered = other.uncovered;
+        if (placed) {
+            placeLaser(row, col);
+        } else {
+            block(index(row, col));
+        }
+        if (propagate) {
+            this.failed = !propagate();
+        }
+    }
+
+    /**
+     * A copy constructor that keeps the current state but none of the
+     * applied moves, used by copy()
+     * @param other - the other SafeConfig
+     */
+    private SafeConfig(SafeConfig other) {
         this.rowDim = other.rowDim;
+        this.colDim = other.colDim;
         this.row = other.row;
         this.col = other.col;
-        this.board = new String[this.rowDim][this.colDim];
-        for(int r = 0; r < this.rowDim; r++){
-            System.arraycopy(other.board[r], 0, this.board[r], 0, this.rowDim);
-        }
-        if(this.board[this.row][this.col].equals("*") || this.board[this.row][this.col].equals(".")){
-            this.board[this.row][this.col] = "L";
-        }
+        this.placed = other.placed;
+        this.failed = other.failed;
+        this.pillars = other.pillars;
+        this.demands = other.demands;
+        this.numbered = other.numbered;
+        this.slots = other.slots;
+        this.propagation = other.propagation;
+        this.order = other.order;
+        this.zobrist = other.zobrist;
+        this.segments = other.segments;
+        this.key = other.key;
+        this.lasers = other.lasers.clone();
+        this.beams = other.beams.clone();
+        this.blocked = other.blocked.clone();
+        this.pillarLasers = other.pillarLasers.clone();
+        this.unsatisfied = other.unsatisfied;
+        this.uncovered = other.uncovered;
+    }
+
+    /**
+     * This function gets the row length of the board
+     * @return - the row length
+     */
+    public int getRowDim() {
+        return this.rowDim;
+    }
+
+    /**
+     * This function gets the col length of the board
+     * @return - the col length
+     */
+    public int getColDim() {
+        return this.colDim;
     }
 
     /**
-     * This function gets the successors for each row and column
-     * making a new SafeConfig for each space on the board
-     * @return
+     * This function gets the successors of the config, one with a
+     * laser placed at the next open cell and one with that cell blocked
+     * @return - the successors, valid and invalid
      */
     @Override
     public Collection<Configuration> getSuccessors() {
         List<Configuration> successors = new LinkedList<>();
-        for(int row = 0; row < this.rowDim; row++){
-            SafeConfig child = new SafeConfig(this, row, this.col);
-            successors.add(child);
+        int cell = this.order.nextCell(this);
+        if (cell >= 0 && !this.failed) {
+            successors.add(new SafeConfig(this, rowOf(cell), colOf(cell), true));
+            successors.add(new SafeConfig(this, rowOf(cell), colOf(cell), false));
         }
         return successors;
     }
 
     /**
-     * Checks if the placment of the laser is valid
-     * @return - true or false
+     * This function gets the successors of the config one at a time, so
+     * the blocked successor is only built if the search gets to it
+     * @return - an iterator over the laser successor, then the blocked one
      */
     @Override
-    public boolean isValid() {
-        //Searching down
-        if(this.row+1 < this.rowDim) {
-            for (int row = this.row + 1; row < this.rowDim; row++) {
-                if (this.board[row][this.col].equals("L")) {
-                    return false;
-                }
-                if (!this.board[row][this.col].equals("L") || !this.board[row][this.col].equals("*")
-                        || this.board[row][this.col].equals(".")) {
-                    break;
+    public Iterator<Configuration> successorIterator() {
+        int cell = this.failed ? -1 : this.order.nextCell(this);
+        return new Iterator<Configuration>() {
+            private int next = cell >= 0 ? 0 : 2;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < 2;
+            }
+
+            @Override
+            public Configuration next() {
+                if (this.next >= 2) {
+                    throw new NoSuchElementException();
                 }
+                boolean laser = this.next++ == 0;
+                return new SafeConfig(SafeConfig.this, rowOf(cell), colOf(cell), laser);
             }
+        };
+    }
+
+    /**
+     * This function gets the number of moves at the next open cell, the
+     * one the cell order picks as apply does, which is 2 (laser, then
+     * blocked) or 0 once every cell is decided or propagation has failed
+     * @return - the number of moves
+     */
+    @Override
+    public int getMoveCount() {
+        return !this.failed && this.order.nextCell(this) >= 0 ? 2 : 0;
+    }
+
+    /**
+     * This function decides the next open cell in place, placing a
+     * laser for move 0 and blocking the cell for move 1
+     * @param move - the move to apply
+     */
+    @Override
+    public void apply(int move) {
+        if (this.trail == null) {
+            int cells = this.rowDim * this.colDim;
+            this.trail = new int[2 * cells];
+            this.frames = new int[cells + 1];
+            this.keys = new long[cells + 1];
+            this.decisions = new int[cells + 1];
         }
-        // Searching up
-        if(this.row-1 > 0) {
-            for (int row = this.row - 1; row >= 0; row--) {
-                if (this.board[row][this.col].equals("L")) {
-                    return false;
-                }
-                if (!this.board[row][this.col].equals("L") || !this.board[row][this.col].equals("*")
-                        || this.board[row][this.col].equals(".")) {
+        int cell = this.order.nextCell(this);
+        this.frames[this.depth] = this.trailSize;
+        this.keys[this.depth] = this.key;
+        this.decisions[this.depth] = cell * 2 + (move == 0 ? 1 : 0);
+        this.depth++;
+        this.row = rowOf(cell);
+        this.col = colOf(cell);
+        this.placed = move == 0;
+        if (this.placed) {
+            placeLaser(this.row, this.col);
+        } else {
+            block(cell);
+        }
+        if (this.propagation) {
+            this.failed = !propagate();
+        }
+    }
+
+    /**
+     * This function undoes the last applied move, clearing the cells it
+     * decided or forced and every cell their beams lit
+     */
+    @Override
+    public void undo() {
+        this.depth--;
+        int start = this.frames[this.depth];
+        for (int i = start; i < this.trailSize; i++) {
+            int cell = this.trail[i] >> 2;
+            switch (this.trail[i] & 3) {
+                case LIT:
+                    clear(this.beams, cell);
+                    if (!get(this.lasers, cell)) {
+                        this.uncovered++;
+                    }
+                    break;
+                case LASER:
+                    clear(this.lasers, cell);
+                    if (!get(this.beams, cell)) {
+                        this.uncovered++;
+                    }
+                    countLaser(rowOf(cell), colOf(cell), -1);
+                    break;
+                case BLOCK:
+                    clear(this.blocked, cell);
                     break;
-                }
             }
         }
-        //Searching left
-        if(this.col-1 > 0){
-            for (int col = this.col - 1; col >= 0; col--) {
-                if (this.board[this.row][col].equals("L")) {
+        this.trailSize = start;
+        this.key = this.keys[this.depth];
+        this.failed = false;
+        if (this.depth == 0) {
+            this.row = -1;
+            this.col = -1;
+            this.placed = false;
+        } else {
+            int decision = this.decisions[this.depth - 1];
+            this.row = rowOf(decision / 2);
+            this.col = colOf(decision / 2);
+            this.placed = decision % 2 == 1;
+        }
+    }
+
+    /**
+     * This function copies the current state of the config
+     * @return - the copy
+     */
+    @Override
+    public Configuration copy() {
+        return new SafeConfig(this);
+    }
+
+    /**
+     * Checks if the last decision is valid.  Propagation may already
+     * have found that it is not.  A new laser may not give
+     * a pillar too many lasers, and the cells it lit may not leave a
+     * pillar without enough open neighbours.  A blocked cell may not
+     * leave a pillar without enough open neighbours, and it still needs
+     * an open cell in its row or column that can light it.
+     * @return - true or false
+     */
+    @Override
+    public boolean isValid() {
+        if (this.failed) {
+            return false;
+        }
+        if (this.row < 0) {
+            return true;
+        }
+        if (!neighbourPillarsFeasible(this.row, this.col)) {
+            return false;
+        }
+        if (this.placed) {
+            // the beams may have closed cells a pillar was counting on
+            int bottom = this.segments.bottom(this.row, this.col);
+            for (int r = this.segments.top(this.row, this.col); r <= bottom; r++) {
+                if (r != this.row && !neighbourPillarsFeasible(r, this.col)) {
                     return false;
                 }
-                if (!this.board[this.row][col].equals("L") || !this.board[this.row][col].equals("*")
-                        || this.board[this.row][col].equals(".")) {
-                    break;
-                }
             }
-        }
-        //Searching right
-        if(this.col + 1 < this.colDim){
-            for (int col = this.col + 1; col < this.colDim; col++) {
-                if (this.board[this.row][col].equals("L")) {
+            int right = this.segments.right(this.row, this.col);
+            for (int c = this.segments.left(this.row, this.col); c <= right; c++) {
+                if (c != this.col && !neighbourPillarsFeasible(this.row, c)) {
                     return false;
                 }
-                if (!this.board[this.row][col].equals("L") || !this.board[this.row][col].equals("*")
-                        || this.board[this.row][col].equals(".")) {
-                    break;
-                }
             }
+            return true;
         }
-        return true;
+        // a forced laser may already have lit the blocked cell
+        return get(this.beams, index(this.row, this.col)) || canBeLit(this.row, this.col);
     }
 
     /**
-     * This function checks if a config is the goal config
-     * once it reaches the goal it checks all the pillars to see
-     * if they have the correct number of laser next to them
-     * @return
+     * This function checks if a config is the goal config.  Every
+     * cell that is not a pillar has to be lit, and every pillar needs
+     * the correct number of lasers next to it, both of which are counted
+     * as lasers are placed.  A config that has failed, such as one with
+     * two lasers already on the board facing each other, is never the goal
+     * @return - true or false
      */
     @Override
     public boolean isGoal() {
-        if(this.col == this.colDim - 1){
-            for(int r = 0; r < this.rowDim; r++){
-                for(int c = 0; c < this.colDim; c++){
-                    if(!this.board[r][c].equals("L") || !this.board[r][c].equals(".") || !this.board[r][c].equals("*")){
-                        if(!pillarChecker(r,c)){
-                            return false;
-                        }
-                    }
-                }
-            }
-            return true;
-        }
-        return false;
+        return !this.failed && this.uncovered == 0 && this.unsatisfied == 0;
     }
 
     /**
@@ -166,113 +548,447 @@ public class SafeConfig implements Configuration {
      * @param col - the col coord
      * @return - true or false
      */
-    public boolean pillarChecker(int row, int col){
-        int pillarCount = 0;
-        if(this.board[row][col].equals("X")){
-            return true;
+    public boolean pillarChecker(int row, int col) {
+        int cell = index(row, col);
+        return this.demands[cell] == NO_DEMAND || this.pillarLasers[this.slots[cell]] == this.demands[cell];
+    }
+
+    /**
+     * This function gets the Zobrist hash of the remaining puzzle
+     * @return - the key
+     */
+    @Override
+    public long getHashKey() {
+        return this.key;
+    }
+
+    /**
+     * This function checks if a cell holds a laser
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - true or false
+     */
+    public boolean hasLaser(int row, int col) {
+        return get(this.lasers, index(row, col));
+    }
+
+    /**
+     * This function builds the board as the model stores it, with
+     * lasers as "L", beams as "*" and open cells as "."
+     * @return - 2D string array that is a game board
+     */
+    public String[][] getBoard() {
+        String[][] board = new String[this.rowDim][this.colDim];
+        for (int r = 0; r < this.rowDim; r++) {
+            for (int c = 0; c < this.colDim; c++) {
+                board[r][c] = String.valueOf(symbol(r, c));
+            }
         }
-        int pillarNum = Integer.parseInt(this.board[row][col]);
-        if(row == 0) {
-            if(col == 0){
-                // check below and right
-                if(this.board[row+1][col].equals("L")){
-                    pillarCount++;
-                }
-                if(this.board[row][col+1].equals("L")){
-                    pillarCount++;
-                }
+        return board;
+    }
+
+    /**
+     * This function prints out the board the same way the model does.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(" ");
+        for (int c = 0; c < this.colDim; c++) {
+            str.append(" ").append(c % 10);
+        }
+        str.append("\n");
+        str.append("  ");
+        for (int c = 0; c < this.colDim * 2 - 1; c++) {
+            str.append("-");
+        }
+        str.append("\n");
+        for (int r = 0; r < this.rowDim; r++) {
+            str.append(r % 10).append("|");
+            for (int c = 0; c < this.colDim; c++) {
+                str.append(symbol(r, c)).append(" ");
             }
-            else if(col == this.colDim -1){
-                // check below and left
-                if(this.board[row+1][col].equals("L")){
-                    pillarCount++;
-                }
-                if(this.board[row][col-1].equals("L")){
-                    pillarCount++;
-                }
+            str.append("\n");
+        }
+        return str.toString();
+    }
+
+    /**
+     * A helper function that places a laser and lights every cell its
+     * beams reach in the four directions, stopping at pillars.  While
+     * moves are applied in place, newly lit cells go on the trail.
+     * @param row - the row coord
+     * @param col - the col coord
+     */
+    private void placeLaser(int row, int col) {
+        int cell = index(row, col);
+        record(cell, LASER);
+        if (!get(this.beams, cell)) {
+            this.key ^= this.zobrist[cell];
+            this.uncovered--;
+        }
+        // each numbered pillar next to it moves up one laser
+        int cells = this.rowDim * this.colDim;
+        for (int i = 0; i < NEIGHBOUR_ROWS.length; i++) {
+            int r = row + NEIGHBOUR_ROWS[i];
+            int c = col + NEIGHBOUR_COLS[i];
+            if (r >= 0 && r < this.rowDim && c >= 0 && c < this.colDim
+                    && this.demands[index(r, c)] != NO_DEMAND) {
+                int pillarKeys = 2 * cells + 5 * index(r, c);
+                int count = this.pillarLasers[this.slots[index(r, c)]];
+                this.key ^= this.zobrist[pillarKeys + count] ^ this.zobrist[pillarKeys + count + 1];
             }
-            else{
-                if(this.board[row+1][col].equals("L")){
-                    pillarCount++;
-                }
-                if(this.board[row][col-1].equals("L")){
-                    pillarCount++;
-                }
-                if(this.board[row][col-1].equals("L")){
-                    pillarCount++;
-                }
+        }
+        countLaser(row, col, 1);
+        set(this.lasers, cell);
+        // a column segment is a run of consecutive cells
+        int last = index(this.segments.bottom(row, col), col);
+        for (int lit = index(this.segments.top(row, col), col); lit <= last; lit++) {
+            if (lit != cell) {
+                light(lit);
             }
         }
-        else if(row == this.rowDim-1){
-            if(col == 0){
-                //check above and right
-                if(this.board[row-1][col].equals("L")){
-                    pillarCount++;
-                }
-                if(this.board[row][col+1].equals("L")){
-                    pillarCount++;
-                }
+        int right = this.segments.right(row, col);
+        for (int c = this.segments.left(row, col); c <= right; c++) {
+            if (c != col) {
+                light(index(row, c));
             }
-            else if(col == this.colDim -1 ){
-                //check above and left
-                if(this.board[row-1][col].equals("L")){
-                    pillarCount++;
-                }
-                if(this.board[row][col-1].equals("L")){
-                    pillarCount++;
+        }
+    }
+
+    /**
+     * A helper function for placeLaser() that lights a single cell.
+     * @param cell - the cell index
+     */
+    private void light(int cell) {
+        if (!get(this.beams, cell)) {
+            record(cell, LIT);
+            if (!get(this.lasers, cell)) {
+                this.key ^= this.zobrist[cell];
+                this.uncovered--;
+            }
+            if (get(this.blocked, cell)) {
+                this.key ^= this.zobrist[this.rowDim * this.colDim + cell];
+            }
+            set(this.beams, cell);
+        }
+    }
+
+    /**
+     * A helper function that moves the laser count of every numbered
+     * pillar next to a cell, keeping track of which pillars have their
+     * number.
+     * @param row - the row coord of the laser
+     * @param col - the col coord of the laser
+     * @param delta - 1 when the laser is placed, -1 when it is undone
+     */
+    private void countLaser(int row, int col, int delta) {
+        for (int i = 0; i < NEIGHBOUR_ROWS.length; i++) {
+            int r = row + NEIGHBOUR_ROWS[i];
+            int c = col + NEIGHBOUR_COLS[i];
+            if (r >= 0 && r < this.rowDim && c >= 0 && c < this.colDim) {
+                int pillar = index(r, c);
+                int slot = this.slots[pillar];
+                if (slot >= 0) {
+                    if (this.pillarLasers[slot] == this.demands[pillar]) {
+                        this.unsatisfied++;
+                    }
+                    this.pillarLasers[slot] += delta;
+                    if (this.pillarLasers[slot] == this.demands[pillar]) {
+                        this.unsatisfied--;
+                    }
                 }
             }
-            else{
-                if(this.board[row-1][col].equals("L")){
-                    pillarCount++;
+        }
+    }
+
+    /**
+     * A helper function that decides a cell will not hold a laser.
+     * @param cell - the cell index
+     */
+    private void block(int cell) {
+        record(cell, BLOCK);
+        this.key ^= this.zobrist[this.rowDim * this.colDim + cell];
+        set(this.blocked, cell);
+    }
+
+    /**
+     * A helper function that pushes a change onto the trail while moves
+     * are applied in place.
+     * @param cell - the cell index
+     * @param kind - LIT, LASER or BLOCK
+     */
+    private void record(int cell, int kind) {
+        if (this.trail != null) {
+            this.trail[this.trailSize++] = cell << 2 | kind;
+        }
+    }
+
+    /**
+     * This function propagates the numbered pillars until nothing
+     * changes.  A pillar whose open neighbours are exactly what it still
+     * needs gets lasers on all of them, and a satisfied pillar gets its
+     * open neighbours blocked.  A blocked cell that can no longer be lit
+     * fails the config.
+     * @return - false if some pillar can no longer be satisfied
+     */
+    private boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int cell : this.numbered) {
+                int row = rowOf(cell);
+                int col = colOf(cell);
+                int need = this.demands[cell] - this.pillarLasers[this.slots[cell]];
+                int open = adjacentOpen(row, col);
+                if (need < 0 || need > open) {
+                    return false;
                 }
-                if(this.board[row][col+1].equals("L")){
-                    pillarCount++;
+                if (open == 0 || (need > 0 && need < open)) {
+                    continue;
                 }
-                if(this.board[row][col-1].equals("L")){
-                    pillarCount++;
+                for (int i = 0; i < NEIGHBOUR_ROWS.length; i++) {
+                    int r = row + NEIGHBOUR_ROWS[i];
+                    int c = col + NEIGHBOUR_COLS[i];
+                    if (r < 0 || r >= this.rowDim || c < 0 || c >= this.colDim || !isOpen(r, c)) {
+                        continue;
+                    }
+                    if (need == 0) {
+                        block(index(r, c));
+                        if (!canBeLit(r, c)) {
+                            return false;
+                        }
+                    } else {
+                        placeLaser(r, c);
+                    }
                 }
-
+                changed = true;
             }
         }
-        else if(col == 0){
-            if(this.board[row-1][col].equals("L")){
-                pillarCount++;
-            }
-            if(this.board[row+1][col].equals("L")){
-                pillarCount++;
-            }
-            if(this.board[row][col+1].equals("L")){
-                pillarCount++;
+        return true;
+    }
+
+    /**
+     * This function finds the first open cell in column order.
+     * @return - the cell index, or -1 if every cell is decided
+     */
+    int firstOpenCell() {
+        int cells = this.rowDim * this.colDim;
+        for (int w = 0; w < this.pillars.length; w++) {
+            long open = ~(this.pillars[w] | this.lasers[w] | this.beams[w] | this.blocked[w]);
+            if (open != 0) {
+                int cell = w * WORD_BITS + Long.numberOfTrailingZeros(open);
+                return cell < cells ? cell : -1;
             }
         }
-        else if(col == this.colDim-1){
-            if(this.board[row-1][col].equals("L")){
-                pillarCount++;
-            }
-            if(this.board[row+1][col].equals("L")){
-                pillarCount++;
-            }
-            if(this.board[row][col-1].equals("L")){
-                pillarCount++;
+        return -1;
+    }
+
+    /**
+     * This function gets the cells of the numbered pillars, in column order.
+     * @return - the cell indexes, which must not be changed
+     */
+    int[] numberedPillars() {
+        return this.numbered;
+    }
+
+    /**
+     * This function gets how many more lasers a numbered pillar needs.
+     * @param cell - the cell index of the pillar
+     * @return - the demand minus the adjacent lasers
+     */
+    int missingLasers(int cell) {
+        return this.demands[cell] - this.pillarLasers[this.slots[cell]];
+    }
+
+    /**
+     * This function counts the open cells next to a cell.
+     * @param cell - the cell index
+     * @return - the number of adjacent open cells
+     */
+    int openNeighbours(int cell) {
+        return adjacentOpen(rowOf(cell), colOf(cell));
+    }
+
+    /**
+     * This function finds the first open cell next to a cell.
+     * @param cell - the cell index
+     * @return - the index of the open neighbour, or -1 if there is none
+     */
+    int firstOpenNeighbour(int cell) {
+        int row = rowOf(cell);
+        int col = colOf(cell);
+        for (int i = 0; i < NEIGHBOUR_ROWS.length; i++) {
+            int r = row + NEIGHBOUR_ROWS[i];
+            int c = col + NEIGHBOUR_COLS[i];
+            if (r >= 0 && r < this.rowDim && c >= 0 && c < this.colDim && isOpen(r, c)) {
+                return index(r, c);
             }
         }
-        else{
-            //check all 4 dirs
-            if(this.board[row-1][col].equals("L")){
-                pillarCount++;
-            }
-            if(this.board[row+1][col].equals("L")){
-                pillarCount++;
+        return -1;
+    }
+
+    /**
+     * This function looks for a blocked cell that is not lit yet and has
+     * only one open cell left in its row and column that can light it.
+     * @return - the index of that open cell, or -1 if there is none
+     */
+    int soleLightingCell() {
+        for (int w = 0; w < this.blocked.length; w++) {
+            long unlit = this.blocked[w] & ~this.beams[w];
+            while (unlit != 0) {
+                int cell = w * WORD_BITS + Long.numberOfTrailingZeros(unlit);
+                int candidate = -1;
+                int candidates = 0;
+                int row = rowOf(cell);
+                int col = colOf(cell);
+                int bottom = this.segments.bottom(row, col);
+                for (int r = this.segments.top(row, col); r <= bottom && candidates < 2; r++) {
+                    if (isOpen(r, col)) {
+                        candidate = index(r, col);
+                        candidates++;
+                    }
+                }
+                int right = this.segments.right(row, col);
+                for (int c = this.segments.left(row, col); c <= right && candidates < 2; c++) {
+                    if (isOpen(row, c)) {
+                        candidate = index(row, c);
+                        candidates++;
+                    }
+                }
+                if (candidates == 1) {
+                    return candidate;
+                }
+                unlit &= unlit - 1;
             }
-            if(this.board[row][col-1].equals("L")){
-                pillarCount++;
+        }
+        return -1;
+    }
+
+    /**
+     * A helper function that checks whether an uncovered cell can still
+     * be lit, i.e. whether its row or column segment holds an open cell.
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - true or false
+     */
+    private boolean canBeLit(int row, int col) {
+        int bottom = this.segments.bottom(row, col);
+        for (int r = this.segments.top(row, col); r <= bottom; r++) {
+            if (isOpen(r, col)) {
+                return true;
             }
-            if(this.board[row][col+1].equals("L")){
-                pillarCount++;
+        }
+        int right = this.segments.right(row, col);
+        for (int c = this.segments.left(row, col); c <= right; c++) {
+            if (isOpen(row, c)) {
+                return true;
             }
         }
-        return pillarCount == pillarNum;
+        return false;
     }
 
-}
\ No newline at end of file
+    /**
+     * A helper function that checks every numbered pillar next to a
+     * cell: it may not have more lasers than it needs, and its lasers
+     * plus its open neighbours have to be able to reach what it needs.
+     * @param row - the row coord of the cell
+     * @param col - the col coord of the cell
+     * @return - true or false
+     */
+    private boolean neighbourPillarsFeasible(int row, int col) {
+        return (row == 0 || pillarFeasible(row - 1, col))
+                && (row == this.rowDim - 1 || pillarFeasible(row + 1, col))
+                && (col == 0 || pillarFeasible(row, col - 1))
+                && (col == this.colDim - 1 || pillarFeasible(row, col + 1));
+    }
+
+    /**
+     * A helper function for neighbourPillarsFeasible() that checks a
+     * single cell, which passes trivially unless it is a numbered pillar.
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - true or false
+     */
+    private boolean pillarFeasible(int row, int col) {
+        int cell = index(row, col);
+        int pillarNum = this.demands[cell];
+        if (pillarNum == NO_DEMAND) {
+            return true;
+        }
+        int lasersNow = this.pillarLasers[this.slots[cell]];
+        return lasersNow <= pillarNum && lasersNow + adjacentOpen(row, col) >= pillarNum;
+    }
+
+    /**
+     * A helper function that counts the open cells next to a cell.
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - the number of adjacent open cells
+     */
+    private int adjacentOpen(int row, int col) {
+        int count = 0;
+        if (row > 0 && isOpen(row - 1, col)) {
+            count++;
+        }
+        if (row < this.rowDim - 1 && isOpen(row + 1, col)) {
+            count++;
+        }
+        if (col > 0 && isOpen(row, col - 1)) {
+            count++;
+        }
+        if (col < this.colDim - 1 && isOpen(row, col + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * A helper function that gets the character a cell is drawn with.
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - the character for the cell
+     */
+    private char symbol(int row, int col) {
+        int cell = index(row, col);
+        if (get(this.pillars, cell)) {
+            return this.demands[cell] == NO_DEMAND ? 'X' : (char) ('0' + this.demands[cell]);
+        } else if (get(this.lasers, cell)) {
+            return 'L';
+        } else if (get(this.beams, cell)) {
+            return '*';
+        }
+        return '.';
+    }
+
+    private boolean isOpen(int row, int col) {
+        int cell = index(row, col);
+        int w = cell / WORD_BITS;
+        long used = this.pillars[w] | this.lasers[w] | this.beams[w] | this.blocked[w];
+        return (used & (1L << cell)) == 0;
+    }
+
+    private int index(int row, int col) {
+        return col * this.rowDim + row;
+    }
+
+    private int rowOf(int cell) {
+        return cell % this.rowDim;
+    }
+
+    private int colOf(int cell) {
+        return cell / this.rowDim;
+    }
+
+    private static boolean get(long[] plane, int cell) {
+        return (plane[cell / WORD_BITS] & (1L << cell)) != 0;
+    }
+
+    private static void set(long[] plane, int cell) {
+        plane[cell / WORD_BITS] |= 1L << cell;
+    }
+
+    private static void clear(long[] plane, int cell) {
+        plane[cell / WORD_BITS] &= ~(1L << cell);
+    }
+}
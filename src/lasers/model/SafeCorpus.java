@@ -0,0 +1,291 @@
+package lasers.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A corpus of safes in a packed binary file, read through a memory map
+ * so any safe can be reached without reading the ones before it.
+ *
+ * The file starts with the magic number "LSB1" and the number of safes,
+ * followed by an index holding the offset of each safe in the file.
+ * Each safe is its row and column dimensions as two shorts, then its
+ * cells in row order, two to a byte with the first cell in the low four
+ * bits.  A cell is 0 to 4 for a numbered pillar, 5 for 'X', 6 for '.',
+ * 7 for 'L' and 8 for '*'.  Every number is big-endian.
+ *
+ * Reading a cell allocates nothing, and getBoard() fills the board with
+ * shared strings, so it only allocates the rows.  The whole file is
+ * mapped at once, so it has to be smaller than 2 GB.  A Writer builds a
+ * corpus one safe at a time.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SafeCorpus {
+
+    /** the first four bytes of every corpus file, "LSB1" */
+    private static final int MAGIC = 0x4C534231;
+    /** the bytes before the index: the magic number and the safe count */
+    private static final int HEADER_BYTES = 8;
+    /** the symbol of each cell code, as a char and as a shared string */
+    private static final char[] SYMBOL_CHARS = {'0', '1', '2', '3', '4', 'X', '.', 'L', '*'};
+    private static final String[] SYMBOLS = {"0", "1", "2", "3", "4", "X", ".", "L", "*"};
+
+    private ByteBuffer buffer;
+    private int size;
+
+    /**
+     * Map a corpus file.
+     *
+     * @param file - the corpus file
+     * @throws IOException - if the file cannot be read or is not a corpus
+     */
+    public SafeCorpus(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Corpus is too big to map: " + file);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (this.buffer.limit() < HEADER_BYTES || this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a safe corpus: " + file);
+        }
+        this.size = this.buffer.getInt(4);
+        if (this.size < 0 || HEADER_BYTES + 4L * this.size > this.buffer.limit()) {
+            throw new IOException("Corrupt safe corpus: " + file);
+        }
+    }
+
+    /**
+     * Get the number of safes in the corpus.
+     *
+     * @return - the safe count
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the number of rows of a safe.
+     *
+     * @param safe - the safe's position in the corpus
+     * @return - the row dimension
+     */
+    public int getRowDim(int safe) {
+        return this.buffer.getShort(offset(safe));
+    }
+
+    /**
+     * Get the number of columns of a safe.
+     *
+     * @param safe - the safe's position in the corpus
+     * @return - the col dimension
+     */
+    public int getColDim(int safe) {
+        return this.buffer.getShort(offset(safe) + 2);
+    }
+
+    /**
+     * Get a cell of a safe.
+     *
+     * @param safe - the safe's position in the corpus
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - the cell's symbol, as in a safe file
+     */
+    public char getCell(int safe, int row, int col) {
+        int offset = offset(safe);
+        return SYMBOL_CHARS[code(offset, row * this.buffer.getShort(offset + 2) + col)];
+    }
+
+    /**
+     * Build a safe as the model stores it.
+     *
+     * @param safe - the safe's position in the corpus
+     * @return - 2D string array that is a game board
+     */
+    public String[][] getBoard(int safe) {
+        int offset = offset(safe);
+        int rowDim = this.buffer.getShort(offset);
+        int colDim = this.buffer.getShort(offset + 2);
+        String[][] board = new String[rowDim][colDim];
+        for (int r = 0; r < rowDim; r++) {
+            for (int c = 0; c < colDim; c++) {
+                board[r][c] = SYMBOLS[code(offset, r * colDim + c)];
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Write safes to a corpus file.
+     *
+     * @param file - the corpus file, which is replaced if it exists
+     * @param boards - the safes, in the same form as LasersModel.getBoard()
+     * @throws IOException - if the file cannot be written
+     */
+    public static void write(Path file, List<String[][]> boards) throws IOException {
+        try (Writer writer = new Writer(file)) {
+            for (String[][] board : boards) {
+                writer.add(board);
+            }
+        }
+    }
+
+    /**
+     * A helper function that finds where a safe starts in the file.
+     * @param safe - the safe's position in the corpus
+     * @return - the offset of its dimensions
+     */
+    private int offset(int safe) {
+        if (safe < 0 || safe >= this.size) {
+            throw new IndexOutOfBoundsException("No safe " + safe + " in a corpus of " + this.size);
+        }
+        return this.buffer.getInt(HEADER_BYTES + 4 * safe);
+    }
+
+    /**
+     * A helper function that reads the code of a cell.
+     * @param offset - the offset of the safe
+     * @param cell - the cell, in row order
+     * @return - the cell code
+     */
+    private int code(int offset, int cell) {
+        int packed = this.buffer.get(offset + 4 + cell / 2);
+        return (packed >> (cell % 2 * 4)) & 0xF;
+    }
+
+    /**
+     * A helper function that gets the code of a symbol.
+     * @param square - the symbol, as in a safe file
+     * @return - the cell code
+     */
+    private static int encode(String square) {
+        for (int code = 0; code < SYMBOLS.length; code++) {
+            if (SYMBOLS[code].equals(square)) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("Not a safe symbol: " + square);
+    }
+
+    /**
+     * Writes a corpus one safe at a time, so the safes never have to be
+     * in memory together.  The cells of each safe go to a temporary file
+     * next to the corpus as it is added, and close() writes the header
+     * and the index, whose size is only known then, followed by them.
+     */
+    public static class Writer implements Closeable {
+        private final Path file;
+        private final Path cells;
+        private final DataOutputStream out;
+        /** the offset of each safe from the start of the cells */
+        private long[] offsets = new long[64];
+        private int size;
+        /** the bytes of cells written so far */
+        private long written;
+        private boolean closed;
+
+        /**
+         * Start a corpus file.
+         *
+         * @param file - the corpus file, which is replaced when closed
+         * @throws IOException - if the temporary file cannot be made
+         */
+        public Writer(Path file) throws IOException {
+            this.file = file;
+            Path dir = file.toAbsolutePath().getParent();
+            this.cells = Files.createTempFile(dir, file.getFileName().toString(), ".cells");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.cells)));
+        }
+
+        /**
+         * Add a safe after the ones before it.  A safe that cannot be
+         * stored leaves the corpus as it was.
+         *
+         * @param board - the safe, in the same form as LasersModel.getBoard()
+         * @throws IllegalArgumentException - if the rows are not all as long,
+         *         a dimension does not fit in a short or a cell is not a symbol
+         * @throws IOException - if the safe cannot be written, or the corpus
+         *         would be too big to map
+         */
+        public void add(String[][] board) throws IOException {
+            int rowDim = board.length;
+            int colDim = rowDim == 0 ? 0 : board[0].length;
+            if (rowDim > Short.MAX_VALUE || colDim > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Safe is too big for a corpus: " + rowDim + "x" + colDim);
+            }
+            for (int r = 0; r < rowDim; r++) {
+                if (board[r].length != colDim) {
+                    throw new IllegalArgumentException("Row " + r + " has " + board[r].length
+                            + " cells, not " + colDim);
+                }
+            }
+            byte[] packed = new byte[(rowDim * colDim + 1) / 2];
+            for (int r = 0; r < rowDim; r++) {
+                for (int c = 0; c < colDim; c++) {
+                    int cell = r * colDim + c;
+                    packed[cell / 2] |= encode(board[r][c]) << (cell % 2 * 4);
+                }
+            }
+            // the whole file, index and all, has to stay mappable
+            if (HEADER_BYTES + 4L * (this.size + 1) + this.written + 4 + packed.length > Integer.MAX_VALUE) {
+                throw new IOException("Corpus is too big: " + this.file);
+            }
+            if (this.size == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, 2 * this.size);
+            }
+            this.offsets[this.size++] = this.written;
+            this.out.writeShort(rowDim);
+            this.out.writeShort(colDim);
+            this.out.write(packed);
+            this.written += 4 + packed.length;
+        }
+
+        /**
+         * Get the number of safes added so far.
+         *
+         * @return - the safe count
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Write the corpus file and remove the temporary one.
+         *
+         * @throws IOException - if the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                this.out.close();
+                try (DataOutputStream corpus = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(this.file)))) {
+                    corpus.writeInt(MAGIC);
+                    corpus.writeInt(this.size);
+                    long start = HEADER_BYTES + 4L * this.size;
+                    for (int i = 0; i < this.size; i++) {
+                        corpus.writeInt((int) (start + this.offsets[i]));
+                    }
+                    Files.copy(this.cells, corpus);
+                }
+            } finally {
+                Files.deleteIfExists(this.cells);
+            }
+        }
+    }
+}
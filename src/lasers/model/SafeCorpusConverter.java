@@ -0,0 +1,68 @@
+package lasers.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This is the main class for converting safe files into a SafeCorpus.
+ * The safes are read with a SafeParser and written in the order they
+ * were given, with the files of a directory in sorted order.  A file
+ * can hold many safes, and - reads them from standard input.  A file
+ * that does not start with a safe, or has one that stops part way, is
+ * left out from there with a message saying where.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SafeCorpusConverter {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java SafeCorpusConverter corpus.lsb safe.in|dir|-...");
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> listed = Files.list(path)) {
+                    files.addAll(listed.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        // each safe is written as it is read, so none are kept
+        SafeCorpus.Writer corpus = new SafeCorpus.Writer(Paths.get(args[0]));
+        try {
+            for (Path file : files) {
+                try (InputStream in = file.toString().equals("-") ? System.in : Files.newInputStream(file)) {
+                    SafeParser parser = new SafeParser(in);
+                    do {
+                        String[][] board = parser.next();
+                        try {
+                            corpus.add(board);
+                            System.out.println(corpus.size() - 1 + ": " + file);
+                        } catch (IllegalArgumentException iae) {
+                            System.out.println("Left out: " + file + ": " + iae.getMessage());
+                        }
+                    } while (parser.hasNext());
+                    if (file.toString().equals("-") && !parser.isAtEnd()) {
+                        System.out.println("Not a safe, rest left out: -: line " + parser.getLine());
+                    }
+                } catch (IOException ioe) {
+                    System.out.println("Not a safe, rest left out: " + file + ": " + ioe.getMessage());
+                }
+            }
+        } finally {
+            corpus.close();
+        }
+        System.out.println("Wrote " + corpus.size() + " safes to " + args[0]);
+    }
+}
@@ -0,0 +1,48 @@
+package lasers.model;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a SafeParser for text that is not a safe.  It knows the
+ * line and column where the text went wrong.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SafeParseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+
+    /**
+     * Initialize the exception.
+     *
+     * @param line - the line, counting from 1
+     * @param column - the column, counting from 1
+     * @param problem - what was wrong
+     */
+    public SafeParseException(int line, int column, String problem) {
+        super("Line " + line + ", column " + column + ": " + problem);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Get the line where the text went wrong.
+     *
+     * @return - the line, counting from 1
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Get the column where the text went wrong.
+     *
+     * @return - the column, counting from 1
+     */
+    public int getColumn() {
+        return this.column;
+    }
+}
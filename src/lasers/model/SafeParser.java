@@ -0,0 +1,238 @@
+package lasers.model;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads safes from a stream of text in the safe file format: a line
+ * with the number of rows and columns, then one line per row with its
+ * cells separated by spaces.  A stream can hold any number of safes one
+ * after another, with or without blank lines between them.  The safes
+ * end at the first line that does not start with a number, so notes
+ * after the last board, like those in the tests directory, are left
+ * unread; isAtEnd() and getLine() tell a caller whether there was any
+ * such text and where it starts.
+ *
+ * The bytes are scanned straight from a buffer, one at a time, rather
+ * than read into lines and split, and every cell of a board refers to
+ * one of a few shared strings, so parsing a safe only allocates the
+ * board's rows.  Text that is not a safe is reported with the line and
+ * column where it went wrong.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SafeParser {
+
+    /** the bytes read from the stream at a time */
+    private static final int BUFFER_BYTES = 8192;
+    /** the largest number of rows or columns a safe may have */
+    private static final int MAX_DIM = 10000;
+    /** the marker returned at the end of the stream */
+    private static final int END = -1;
+    /** the shared string of each cell symbol, indexed by the symbol */
+    private static final String[] SYMBOLS = new String[128];
+
+    static {
+        for (char symbol : "01234X.L*".toCharArray()) {
+            SYMBOLS[symbol] = String.valueOf(symbol);
+        }
+    }
+
+    private InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    /** where the next byte is in the text, counting from 1 */
+    private int line;
+    private int column;
+
+    /**
+     * Initialize a parser of a stream.
+     *
+     * @param in - the stream, which the parser reads as it goes
+     */
+    public SafeParser(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_BYTES];
+        this.line = 1;
+        this.column = 1;
+    }
+
+    /**
+     * Read the first safe of a file.
+     *
+     * @param filename - name of the file
+     * @return - the board, in the same form as LasersModel.getBoard()
+     * @throws IOException - if the file cannot be read or is not a safe
+     */
+    public static String[][] readBoard(String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            return new SafeParser(in).next();
+        }
+    }
+
+    /**
+     * Check whether there is another safe in the stream, skipping any
+     * blank lines before it.
+     *
+     * @return - true if the next text starts with a number
+     * @throws IOException - if the stream cannot be read
+     */
+    public boolean hasNext() throws IOException {
+        while (peek() == ' ' || peek() == '\t' || peek() == '\r' || peek() == '\n') {
+            read();
+        }
+        return peek() >= '0' && peek() <= '9';
+    }
+
+    /**
+     * Check whether only blank text is left in the stream.  Once
+     * hasNext() is false, this is false if there is text that does not
+     * start a safe.
+     *
+     * @return - true at the end of the stream
+     * @throws IOException - if the stream cannot be read
+     */
+    public boolean isAtEnd() throws IOException {
+        return !hasNext() && peek() == END;
+    }
+
+    /**
+     * Get the line of the next text to be read.
+     *
+     * @return - the line, counting from 1
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Read the next safe in the stream.
+     *
+     * @return - the board, in the same form as LasersModel.getBoard()
+     * @throws IOException - if the stream cannot be read or the next
+     * text is not a safe
+     */
+    public String[][] next() throws IOException {
+        hasNext();
+        int rowDim = readDimension("the number of rows");
+        if (peek() != ' ' && peek() != '\t') {
+            throw error("expected the number of columns after the number of rows");
+        }
+        skipBlanks();
+        int colDim = readDimension("the number of columns");
+        endLine("expected the end of the line after the dimensions");
+
+        // each row is only made once its text is there, so a header
+        // alone cannot make the parser allocate a huge board
+        String[][] board = new String[rowDim][];
+        for (int r = 0; r < rowDim; r++) {
+            if (peek() == END) {
+                throw error("expected " + rowDim + " rows, found " + r);
+            }
+            board[r] = new String[colDim];
+            for (int c = 0; c < colDim; c++) {
+                skipBlanks();
+                int symbol = peek();
+                if (symbol == '\n' || symbol == END) {
+                    throw error("expected " + colDim + " cells in the row, found " + c);
+                }
+                if (symbol >= SYMBOLS.length || SYMBOLS[symbol] == null) {
+                    throw error("'" + (char) symbol + "' is not a cell");
+                }
+                read();
+                int after = peek();
+                if (after != ' ' && after != '\t' && after != '\r' && after != '\n' && after != END) {
+                    throw error("cells must be separated by spaces");
+                }
+                board[r][c] = SYMBOLS[symbol];
+            }
+            endLine("expected " + colDim + " cells in the row, found more");
+        }
+        return board;
+    }
+
+    /**
+     * A helper function that reads a row or column dimension.
+     * @param what - what the number is, for the error message
+     * @return - the dimension
+     * @throws IOException - if there is no number there
+     */
+    private int readDimension(String what) throws IOException {
+        if (peek() < '0' || peek() > '9') {
+            throw error("expected " + what);
+        }
+        int line = this.line;
+        int column = this.column;
+        int value = 0;
+        while (peek() >= '0' && peek() <= '9') {
+            value = Math.min(10 * value + read() - '0', MAX_DIM + 1);
+        }
+        if (value == 0 || value > MAX_DIM) {
+            throw new SafeParseException(line, column, what + " must be from 1 to " + MAX_DIM);
+        }
+        return value;
+    }
+
+    /**
+     * A helper function that reads the rest of a line, which may only
+     * hold spaces.
+     * @param problem - the error message if it holds anything else
+     * @throws IOException - if it holds anything else
+     */
+    private void endLine(String problem) throws IOException {
+        skipBlanks();
+        if (peek() == '\n') {
+            read();
+        } else if (peek() != END) {
+            throw error(problem);
+        }
+    }
+
+    private void skipBlanks() throws IOException {
+        while (peek() == ' ' || peek() == '\t' || peek() == '\r') {
+            read();
+        }
+    }
+
+    private SafeParseException error(String problem) {
+        return new SafeParseException(this.line, this.column, problem);
+    }
+
+    /**
+     * A helper function that looks at the next byte without reading it.
+     * @return - the byte, or END at the end of the stream
+     * @throws IOException - if the stream cannot be read
+     */
+    private int peek() throws IOException {
+        if (this.position == this.limit) {
+            this.limit = Math.max(0, this.in.read(this.buffer));
+            this.position = 0;
+            if (this.limit == 0) {
+                return END;
+            }
+        }
+        return this.buffer[this.position] & 0xFF;
+    }
+
+    /**
+     * A helper function that reads the next byte and moves the line and
+     * column along.
+     * @return - the byte, or END at the end of the stream
+     * @throws IOException - if the stream cannot be read
+     */
+    private int read() throws IOException {
+        int next = peek();
+        if (next != END) {
+            this.position++;
+            if (next == '\n') {
+                this.line++;
+                this.column = 1;
+            } else {
+                this.column++;
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,138 @@
+package lasers.model;
+
+import lasers.backtracking.Configuration;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The path to a solved safe, kept as the starting safe and the lasers
+ * that were added to it, one (row, col) move per step, instead of a
+ * full board for every step.  A step's board is only built when it is
+ * asked for, by replaying the moves up to it onto the starting safe,
+ * so the path itself takes memory for its moves and nothing more.
+ *
+ * The moves are the lasers of the solution that are not on the
+ * starting safe, in column order.  Replaying them one at a time never
+ * propagates, so each step adds exactly one laser.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SafePath implements Iterable<Configuration> {
+
+    private SafeConfig start;
+    /** the cell of each move, as row * colDim + col */
+    private int[] moves;
+
+    /**
+     * Initialize the path from a starting safe to one of its solutions.
+     *
+     * @param start - the starting safe
+     * @param goal - a solution of the starting safe
+     */
+    public SafePath(SafeConfig start, SafeConfig goal) {
+        this.start = start;
+        int rowDim = start.getRowDim();
+        int colDim = start.getColDim();
+        int count = 0;
+        int[] cells = new int[rowDim * colDim];
+        for (int c = 0; c < colDim; c++) {
+            for (int r = 0; r < rowDim; r++) {
+                if (goal.hasLaser(r, c) && !start.hasLaser(r, c)) {
+                    cells[count++] = r * colDim + c;
+                }
+            }
+        }
+        this.moves = new int[count];
+        System.arraycopy(cells, 0, this.moves, 0, count);
+    }
+
+    /**
+     * Get the starting safe.
+     *
+     * @return - the safe before any move
+     */
+    public SafeConfig getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the number of moves, one fewer than the number of steps.
+     *
+     * @return - the move count
+     */
+    public int getMoveCount() {
+        return this.moves.length;
+    }
+
+    /**
+     * Get the row of a move.
+     *
+     * @param move - the number of the move, from 0
+     * @return - the row the laser goes in
+     */
+    public int getRow(int move) {
+        return this.moves[move] / this.start.getColDim();
+    }
+
+    /**
+     * Get the column of a move.
+     *
+     * @param move - the number of the move, from 0
+     * @return - the column the laser goes in
+     */
+    public int getCol(int move) {
+        return this.moves[move] % this.start.getColDim();
+    }
+
+    /**
+     * Build the board of one step by replaying the moves before it.
+     *
+     * @param step - 0 for the starting safe, up to getMoveCount() for the solution
+     * @return - the board after that many moves
+     */
+    public Configuration getStep(int step) {
+        if (step < 0 || step > this.moves.length) {
+            throw new IndexOutOfBoundsException("No step " + step);
+        }
+        SafeConfig config = this.start;
+        for (int move = 0; move < step; move++) {
+            config = new SafeConfig(config, getRow(move), getCol(move), true, false);
+        }
+        return config;
+    }
+
+    /**
+     * Walk the steps from the starting safe to the solution, building
+     * each board from the one before it only when it is reached.
+     *
+     * @return - an iterator over the getMoveCount() + 1 steps
+     */
+    @Override
+    public Iterator<Configuration> iterator() {
+        return new Iterator<Configuration>() {
+            private SafeConfig current;
+            private int step = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.step <= SafePath.this.moves.length;
+            }
+
+            @Override
+            public Configuration next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (this.step == 0) {
+                    this.current = SafePath.this.start;
+                } else {
+                    int move = this.step - 1;
+                    this.current = new SafeConfig(this.current, getRow(move), getCol(move), true, false);
+                }
+                this.step++;
+                return this.current;
+            }
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package lasers.model;
+
+/**
+ * The beam segments of a safe: every maximal run of cells between
+ * pillars (or the edge of the board) along a row or a column.  A laser
+ * lights exactly the cells of its row segment and its column segment,
+ * and two lasers see each other exactly when they share a segment, so
+ * with the segments worked out once per safe nothing has to walk the
+ * board looking for the next pillar.
+ *
+ * The index only depends on where the pillars are, so it never changes
+ * once it is built and one index is shared by every configuration of a
+ * safe.  Row segments are numbered first, then column segments.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SegmentIndex {
+
+    private final int rowDim;
+    private final int colDim;
+    /** the row segment and column segment of each cell, -1 for pillars */
+    private final int[] rowSegments;
+    private final int[] colSegments;
+    /** the first and last col of each row segment, or row of each column segment */
+    private final int[] first;
+    private final int[] last;
+
+    /**
+     * Build the index of a board.
+     *
+     * @param board - the board, in the same form as LasersModel.getBoard()
+     */
+    public SegmentIndex(String[][] board) {
+        this.rowDim = board.length;
+        this.colDim = this.rowDim == 0 ? 0 : board[0].length;
+        int cells = this.rowDim * this.colDim;
+        this.rowSegments = new int[cells];
+        this.colSegments = new int[cells];
+        // there are never more segments of a kind than cells
+        int[] first = new int[2 * cells];
+        int[] last = new int[2 * cells];
+
+        int segments = 0;
+        for (int r = 0; r < this.rowDim; r++) {
+            for (int c = 0; c < this.colDim; c++) {
+                if (isPillar(board[r][c])) {
+                    this.rowSegments[r * this.colDim + c] = -1;
+                } else {
+                    if (c == 0 || isPillar(board[r][c - 1])) {
+                        first[segments++] = c;
+                    }
+                    last[segments - 1] = c;
+                    this.rowSegments[r * this.colDim + c] = segments - 1;
+                }
+            }
+        }
+        for (int c = 0; c < this.colDim; c++) {
+            for (int r = 0; r < this.rowDim; r++) {
+                if (isPillar(board[r][c])) {
+                    this.colSegments[r * this.colDim + c] = -1;
+                } else {
+                    if (r == 0 || isPillar(board[r - 1][c])) {
+                        first[segments++] = r;
+                    }
+                    last[segments - 1] = r;
+                    this.colSegments[r * this.colDim + c] = segments - 1;
+                }
+            }
+        }
+        this.first = new int[segments];
+        this.last = new int[segments];
+        System.arraycopy(first, 0, this.first, 0, segments);
+        System.arraycopy(last, 0, this.last, 0, segments);
+    }
+
+    /**
+     * Get the number of row and column segments.
+     *
+     * @return - the segment count
+     */
+    public int getSegmentCount() {
+        return this.first.length;
+    }
+
+    /**
+     * Get the row segment a cell is in.
+     *
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - the segment, or -1 if the cell is a pillar
+     */
+    public int rowSegment(int row, int col) {
+        return this.rowSegments[row * this.colDim + col];
+    }
+
+    /**
+     * Get the column segment a cell is in.
+     *
+     * @param row - the row coord
+     * @param col - the col coord
+     * @return - the segment, or -1 if the cell is a pillar
+     */
+    public int colSegment(int row, int col) {
+        return this.colSegments[row * this.colDim + col];
+    }
+
+    /**
+     * Get the first col of the row segment a cell is in.
+     *
+     * @param row - the row coord of a cell that is not a pillar
+     * @param col - the col coord
+     * @return - the col
+     */
+    public int left(int row, int col) {
+        return this.first[rowSegment(row, col)];
+    }
+
+    /**
+     * Get the last col of the row segment a cell is in.
+     *
+     * @param row - the row coord of a cell that is not a pillar
+     * @param col - the col coord
+     * @return - the col
+     */
+    public int right(int row, int col) {
+        return this.last[rowSegment(row, col)];
+    }
+
+    /**
+     * Get the first row of the column segment a cell is in.
+     *
+     * @param row - the row coord of a cell that is not a pillar
+     * @param col - the col coord
+     * @return - the row
+     */
+    public int top(int row, int col) {
+        return this.first[colSegment(row, col)];
+    }
+
+    /**
+     * Get the last row of the column segment a cell is in.
+     *
+     * @param row - the row coord of a cell that is not a pillar
+     * @param col - the col coord
+     * @return - the row
+     */
+    public int bottom(int row, int col) {
+        return this.last[colSegment(row, col)];
+    }
+
+    private static boolean isPillar(String square) {
+        return square.equals("X") || Character.isDigit(square.charAt(0));
+    }
+}
@@ -0,0 +1,169 @@
+package lasers.model;
+
+/**
+ * The eight ways a board can be rotated or mirrored.  A rotated or
+ * mirrored safe is the same puzzle: beams still run along rows and
+ * columns and stop at the same pillars, and every pillar keeps the same
+ * neighbours, so a solution of one maps onto a solution of the other.
+ *
+ * The rotations by a quarter turn and the transposes swap the row and
+ * column dimensions, which turns an R x C safe into a C x R safe.
+ *
+ * canonical() picks, out of all eight, the transform that gives the
+ * smallest board, so every rotation and reflection of a safe has the
+ * same canonical form and can share a solution.  The transform is
+ * what maps a solution of the canonical form back with inverse().
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public enum Symmetry {
+    IDENTITY,
+    ROTATE_90,
+    ROTATE_180,
+    ROTATE_270,
+    FLIP_HORIZONTAL,
+    FLIP_VERTICAL,
+    TRANSPOSE,
+    ANTI_TRANSPOSE;
+
+    /**
+     * Get the transform that undoes this one.
+     *
+     * @return - the inverse
+     */
+    public Symmetry inverse() {
+        switch (this) {
+            case ROTATE_90:
+                return ROTATE_270;
+            case ROTATE_270:
+                return ROTATE_90;
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * Check whether the transform swaps the row and column dimensions.
+     *
+     * @return - true for the quarter turns and the transposes
+     */
+    public boolean swapsDimensions() {
+        return this == ROTATE_90 || this == ROTATE_270 || this == TRANSPOSE || this == ANTI_TRANSPOSE;
+    }
+
+    /**
+     * Rotate or mirror a board.
+     *
+     * @param board - the board, in the same form as LasersModel.getBoard()
+     * @return - a new board
+     */
+    public String[][] apply(String[][] board) {
+        int rowDim = board.length;
+        int colDim = rowDim == 0 ? 0 : board[0].length;
+        int rows = swapsDimensions() ? colDim : rowDim;
+        int cols = swapsDimensions() ? rowDim : colDim;
+        String[][] moved = new String[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                moved[r][c] = board[sourceRow(r, c, rowDim, colDim)][sourceCol(r, c, rowDim, colDim)];
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Find the transform that gives the canonical form of a board: the
+     * one with the fewest rows, then the smallest cells in row order.
+     * Beams are treated as open cells, since they follow from the lasers.
+     *
+     * @param board - the board, in the same form as LasersModel.getBoard()
+     * @return - the transform to apply to get the canonical form
+     */
+    public static Symmetry canonical(String[][] board) {
+        int rowDim = board.length;
+        int colDim = rowDim == 0 ? 0 : board[0].length;
+        Symmetry best = IDENTITY;
+        for (Symmetry candidate : values()) {
+            if (compare(board, rowDim, colDim, candidate, best) < 0) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Compare the boards two transforms give, without building them.
+     */
+    private static int compare(String[][] board, int rowDim, int colDim, Symmetry a, Symmetry b) {
+        int rows = a.swapsDimensions() ? colDim : rowDim;
+        int cols = a.swapsDimensions() ? rowDim : colDim;
+        int otherRows = b.swapsDimensions() ? colDim : rowDim;
+        if (rows != otherRows) {
+            return Integer.compare(rows, otherRows);
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                char first = symbol(board[a.sourceRow(r, c, rowDim, colDim)][a.sourceCol(r, c, rowDim, colDim)]);
+                char second = symbol(board[b.sourceRow(r, c, rowDim, colDim)][b.sourceCol(r, c, rowDim, colDim)]);
+                if (first != second) {
+                    return Character.compare(first, second);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static char symbol(String square) {
+        return square.equals("*") ? '.' : square.charAt(0);
+    }
+
+    /**
+     * Get the row of the original board that ends up at a cell.
+     *
+     * @param row - the row coord on the moved board
+     * @param col - the col coord on the moved board
+     * @param rowDim - the rows of the original board
+     * @param colDim - the cols of the original board
+     * @return - the row coord on the original board
+     */
+    private int sourceRow(int row, int col, int rowDim, int colDim) {
+        switch (this) {
+            case ROTATE_90:
+            case ANTI_TRANSPOSE:
+                return rowDim - 1 - col;
+            case ROTATE_180:
+            case FLIP_VERTICAL:
+                return rowDim - 1 - row;
+            case ROTATE_270:
+            case TRANSPOSE:
+                return col;
+            default:
+                return row;
+        }
+    }
+
+    /**
+     * Get the col of the original board that ends up at a cell.
+     *
+     * @param row - the row coord on the moved board
+     * @param col - the col coord on the moved board
+     * @param rowDim - the rows of the original board
+     * @param colDim - the cols of the original board
+     * @return - the col coord on the original board
+     */
+    private int sourceCol(int row, int col, int rowDim, int colDim) {
+        switch (this) {
+            case ROTATE_90:
+            case TRANSPOSE:
+                return row;
+            case ROTATE_180:
+            case FLIP_HORIZONTAL:
+                return colDim - 1 - col;
+            case ROTATE_270:
+            case ANTI_TRANSPOSE:
+                return colDim - 1 - row;
+            default:
+                return col;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package lasers.service;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent requests so their percentiles
+ * can be reported.  Only the last WINDOW samples are kept, so the
+ * percentiles follow the current load rather than the whole run.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class LatencyRecorder {
+
+    /** the number of most recent samples kept */
+    private static final int WINDOW = 4096;
+
+    private final long[] samples;
+    private int next;
+    private long count;
+
+    /**
+     * Initialize an empty recorder.
+     */
+    public LatencyRecorder() {
+        this.samples = new long[WINDOW];
+    }
+
+    /**
+     * Add the latency of a request.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        this.samples[this.next] = nanos;
+        this.next = (this.next + 1) % WINDOW;
+        this.count++;
+    }
+
+    /**
+     * Get the number of latencies added so far.
+     *
+     * @return the count
+     */
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Get percentiles of the kept latencies.
+     *
+     * @param percentiles the percentiles, each from 0 to 100
+     * @return the latency at each percentile in nanoseconds, all 0 if
+     * nothing has been recorded
+     */
+    public long[] percentiles(double... percentiles) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(this.samples, (int) Math.min(this.count, WINDOW));
+        }
+        Arrays.sort(sorted);
+        long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length && sorted.length > 0; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length) - 1;
+            values[i] = sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+        return values;
+    }
+}
@@ -0,0 +1,110 @@
+package lasers.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is a load generator for a SolverService.  A number of clients
+ * each send their share of the requests one after another, going round
+ * the safes they were given, and the answers, the client side latency
+ * percentiles and the throughput are printed at the end, followed by
+ * the service's own stats.
+ *
+ * With -local a service is started in this process on a free port, so
+ * the service can be tried out without starting one first.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class LoadGenerator {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 8080;
+        boolean local = false;
+        int clients = 4;
+        int requests = 100;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queue = 16;
+        String engine = "backtracker";
+        List<String> safes = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("-port=")) {
+                port = Integer.parseInt(arg.substring("-port=".length()));
+            } else if (arg.equals("-local")) {
+                local = true;
+            } else if (arg.startsWith("-clients=")) {
+                clients = Integer.parseInt(arg.substring("-clients=".length()));
+            } else if (arg.startsWith("-requests=")) {
+                requests = Integer.parseInt(arg.substring("-requests=".length()));
+            } else if (arg.startsWith("-workers=")) {
+                workers = Integer.parseInt(arg.substring("-workers=".length()));
+            } else if (arg.startsWith("-queue=")) {
+                queue = Integer.parseInt(arg.substring("-queue=".length()));
+            } else if (arg.startsWith("-engine=")) {
+                engine = arg.substring("-engine=".length());
+            } else if (arg.startsWith("-")) {
+                System.out.println("Unknown option: " + arg);
+                return;
+            } else {
+                safes.add(new String(Files.readAllBytes(Paths.get(arg)), StandardCharsets.UTF_8));
+            }
+        }
+        if (safes.isEmpty()) {
+            System.out.println("Usage: java LoadGenerator [-port=n | -local [-workers=n] [-queue=n] [-engine=name]]" +
+                    " [-clients=n] [-requests=n] safe.in...");
+            return;
+        }
+
+        SolverService service = local ? new SolverService(0, workers, queue, engine, 10000) : null;
+        SolverClient client = new SolverClient(local ? service.getPort() : port);
+        LatencyRecorder latencies = new LatencyRecorder();
+        AtomicInteger sent = new AtomicInteger();
+        // the number of answers with each status code, by code / 100
+        AtomicInteger[] codes = new AtomicInteger[6];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = new AtomicInteger();
+        }
+        AtomicInteger failures = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            int total = requests;
+            pool.execute(() -> {
+                for (int n = sent.getAndIncrement(); n < total; n = sent.getAndIncrement()) {
+                    long begin = System.nanoTime();
+                    try {
+                        SolverClient.Response response = client.solve(safes.get(n % safes.size()));
+                        codes[Math.min(5, response.getCode() / 100)].incrementAndGet();
+                        if (response.getCode() == 200) {
+                            latencies.record(System.nanoTime() - begin);
+                        }
+                    } catch (IOException ioe) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] values = latencies.percentiles(50, 90, 99, 100);
+        System.out.printf("%d requests in %.3f seconds: %.2f requests/sec%n", requests, seconds,
+                requests / seconds);
+        System.out.printf("Answered: %d ok, %d bad request, %d rejected, %d failed%n",
+                codes[2].get(), codes[4].get(), codes[5].get(), failures.get());
+        System.out.printf("Latency ms: p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n",
+                values[0] / 1e6, values[1] / 1e6, values[2] / 1e6, values[3] / 1e6);
+        System.out.println("Service stats: " + client.stats().getBody());
+        if (service != null) {
+            service.stop();
+        }
+    }
+}
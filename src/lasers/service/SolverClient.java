@@ -0,0 +1,102 @@
+package lasers.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A client of a SolverService running on this machine.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SolverClient {
+
+    private String base;
+
+    /**
+     * Initialize a client of the service on a local port.
+     *
+     * @param port the port the service listens on
+     */
+    public SolverClient(int port) {
+        this.base = "http://localhost:" + port;
+    }
+
+    /**
+     * The answer to a request.
+     */
+    public static class Response {
+        private final int code;
+        private final String body;
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        /**
+         * Get the HTTP status code: 200 once the safe was looked at, 400
+         * for a safe that could not be read, 503 when the queue was full.
+         *
+         * @return the code
+         */
+        public int getCode() {
+            return this.code;
+        }
+
+        /**
+         * Get the JSON the service answered with.
+         *
+         * @return the body
+         */
+        public String getBody() {
+            return this.body;
+        }
+    }
+
+    /**
+     * Send a safe to be solved and wait for the answer.
+     *
+     * @param safe the safe in the form of a safe file
+     * @return the answer
+     * @throws IOException if the service could not be reached
+     */
+    public Response solve(String safe) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.base + "/solve").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(safe.getBytes(StandardCharsets.UTF_8));
+        }
+        return read(connection);
+    }
+
+    /**
+     * Get the service's queue depth, counts and latency percentiles.
+     *
+     * @return the answer
+     * @throws IOException if the service could not be reached
+     */
+    public Response stats() throws IOException {
+        return read((HttpURLConnection) new URL(this.base + "/stats").openConnection());
+    }
+
+    private static Response read(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[4096];
+                for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(code, new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
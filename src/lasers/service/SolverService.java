@@ -0,0 +1,288 @@
+package lasers.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lasers.backtracking.Backtracker;
+import lasers.backtracking.Configuration;
+import lasers.backtracking.DancingLinks;
+import lasers.backtracking.SatEngine;
+import lasers.backtracking.SolveOptions;
+import lasers.model.CellOrder;
+import lasers.model.SafeConfig;
+import lasers.model.SafeParseException;
+import lasers.model.SafeParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A solver that runs behind a local HTTP endpoint, so other programs
+ * can solve safes without starting a SafeSolver for each one.  It only
+ * listens on the loopback address.
+ *
+ * POST /solve takes a safe in the same text form as a safe file (the
+ * dimensions, then one line per row) and answers with a JSON object
+ * holding the status (solved, unsolved or timeout), the solved board in
+ * the same text form, the node count and the time spent queued and
+ * solving.  GET /stats answers with the queue depth, the request
+ * counts and the latency percentiles of the recent requests.
+ *
+ * Only the backtracker can be stopped, so the time limit applies to it
+ * alone; the dlx and sat engines always run a safe to the end.
+ *
+ * Requests are solved by a fixed pool of workers behind a bounded
+ * queue.  When the queue is full a request is turned away at once with
+ * 503 and a Retry-After header, rather than piling up behind the
+ * others.
+ *
+ * @author Lukowski, Matthew and Muthuswamy, Vishnu
+ */
+public class SolverService {
+
+    /** the percentiles reported by /stats */
+    private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+    private HttpServer server;
+    private ThreadPoolExecutor workers;
+    private String engine;
+    private long timeoutMillis;
+    private LatencyRecorder latencies;
+    private AtomicLong completed;
+    private AtomicLong rejected;
+
+    /**
+     * Initialize a service and start listening.
+     *
+     * @param port the port to listen on, 0 for any free port
+     * @param workers the number of safes solved at once
+     * @param queueCapacity the number of requests that may wait for a worker
+     * @param engine the engine to solve with: backtracker, dlx or sat
+     * @param timeoutMillis how long the backtracker may spend on a safe, 0 for no
+     *                      limit; the other engines have none
+     * @throws IOException if the port could not be opened
+     */
+    public SolverService(int port, int workers, int queueCapacity, String engine, long timeoutMillis)
+            throws IOException {
+        this.engine = engine;
+        this.timeoutMillis = timeoutMillis;
+        this.latencies = new LatencyRecorder();
+        this.completed = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/solve", this::handleSolve);
+        this.server.createContext("/stats", this::handleStats);
+        this.server.start();
+    }
+
+    /**
+     * Get the port the service listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stop listening and drop any requests that are still waiting.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.workers.shutdownNow();
+    }
+
+    /**
+     * Parse a safe in the form of a safe file.
+     *
+     * @param in the dimensions, then one line per row
+     * @return the board
+     * @throws SafeParseException if the text is not a safe
+     * @throws IOException if the text could not be read
+     */
+    public static String[][] parseBoard(InputStream in) throws IOException {
+        return new SafeParser(in).next();
+    }
+
+    /**
+     * Write a board in the form of a safe file.
+     *
+     * @param board the board
+     * @return the dimensions, then one line per row
+     */
+    public static String formatBoard(String[][] board) {
+        StringBuilder text = new StringBuilder();
+        text.append(board.length).append(' ').append(board.length == 0 ? 0 : board[0].length).append('\n');
+        for (String[] row : board) {
+            text.append(String.join(" ", row)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        long received = System.nanoTime();
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "{\"error\":\"use POST\"}");
+            return;
+        }
+        try {
+            this.workers.execute(() -> solve(exchange, received));
+        } catch (RejectedExecutionException ree) {
+            this.rejected.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "{\"error\":\"queue full\"}");
+        }
+    }
+
+    /**
+     * Read and solve a safe on a worker thread and send the answer.  The
+     * body is read here rather than on the server's dispatcher thread, so
+     * a slow or huge upload only holds up this worker.  Whatever goes
+     * wrong, even running out of stack or heap, the exchange is closed
+     * and counted, so the client is never left waiting.
+     */
+    private void solve(HttpExchange exchange, long received) {
+        try {
+            try {
+                String[][] board;
+                try {
+                    board = parseBoard(exchange.getRequestBody());
+                } catch (SafeParseException spe) {
+                    respond(exchange, 400, "{\"error\":\"" + escape(spe.getMessage()) + "\",\"line\":"
+                            + spe.getLine() + ",\"column\":" + spe.getColumn() + "}");
+                    return;
+                } catch (IOException ioe) {
+                    respond(exchange, 400, "{\"error\":\"" + escape("The safe could not be read: "
+                            + ioe.getMessage()) + "\"}");
+                    return;
+                }
+                respond(exchange, 200, answer(board, received));
+            } catch (RuntimeException | Error e) {
+                respond(exchange, 500, "{\"error\":\"" + escape(String.valueOf(e)) + "\"}");
+            }
+        } catch (IOException ioe) {
+            // the client has gone, there is no one left to tell
+        } finally {
+            exchange.close();
+            this.latencies.record(System.nanoTime() - received);
+            this.completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Solve a safe.
+     *
+     * @param board the safe
+     * @param received when the request came in, in nanoseconds
+     * @return the JSON answer, whose queue time includes reading the safe
+     */
+    private String answer(String[][] board, long received) {
+        long started = System.nanoTime();
+        String status;
+        long nodes;
+        Optional<Configuration> sol;
+        SafeConfig init = new SafeConfig(board, true, CellOrder.COLUMN_MAJOR);
+        if (this.engine.equals("dlx")) {
+            DancingLinks dlx = new DancingLinks();
+            sol = dlx.solve(init);
+            nodes = dlx.getNodeCount();
+            status = sol.isPresent() ? "solved" : "unsolved";
+        } else if (this.engine.equals("sat")) {
+            SatEngine sat = new SatEngine();
+            sol = sat.solve(init);
+            nodes = sat.getDecisionCount();
+            status = sol.isPresent() ? "solved" : "unsolved";
+        } else {
+            Backtracker bt = new Backtracker(false);
+            SolveOptions options = new SolveOptions();
+            options.setTimeoutMillis(this.timeoutMillis);
+            bt.setOptions(options);
+            sol = bt.solveInPlace(init);
+            nodes = bt.getNodeCount();
+            status = sol.isPresent() ? "solved"
+                    : bt.getOutcome() == Backtracker.Outcome.BUDGET_EXCEEDED ? "timeout" : "unsolved";
+        }
+        long finished = System.nanoTime();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"status\":\"").append(status).append('"');
+        sol.ifPresent(config -> json.append(",\"board\":\"")
+                .append(escape(formatBoard(((SafeConfig) config).getBoard()))).append('"'));
+        json.append(",\"nodes\":").append(nodes)
+                .append(String.format(Locale.ROOT, ",\"queueMillis\":%.3f,\"solveMillis\":%.3f}",
+                        (started - received) / 1e6, (finished - started) / 1e6));
+        return json.toString();
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        long[] values = this.latencies.percentiles(PERCENTILES);
+        String json = String.format(Locale.ROOT,
+                "{\"queueDepth\":%d,\"active\":%d,\"completed\":%d,\"rejected\":%d," +
+                        "\"latencyMillis\":{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f}}",
+                this.workers.getQueue().size(), this.workers.getActiveCount(), this.completed.get(),
+                this.rejected.get(), values[0] / 1e6, values[1] / 1e6, values[2] / 1e6, values[3] / 1e6);
+        respond(exchange, 200, json);
+    }
+
+    private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Run the service until the process is stopped.
+     *
+     * @param args the options
+     * @throws IOException if the port could not be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queue = 64;
+        String engine = "backtracker";
+        long timeout = 10000;
+        for (String arg : args) {
+            if (arg.startsWith("-port=")) {
+                port = Integer.parseInt(arg.substring("-port=".length()));
+            } else if (arg.startsWith("-workers=")) {
+                workers = Integer.parseInt(arg.substring("-workers=".length()));
+            } else if (arg.startsWith("-queue=")) {
+                queue = Integer.parseInt(arg.substring("-queue=".length()));
+            } else if (arg.startsWith("-timeout=")) {
+                timeout = Long.parseLong(arg.substring("-timeout=".length()));
+            } else if (arg.startsWith("-engine=")) {
+                engine = arg.substring("-engine=".length());
+                if (!engine.equals("backtracker") && !engine.equals("dlx") && !engine.equals("sat")) {
+                    System.out.println("Unknown engine: " + engine);
+                    return;
+                }
+            } else {
+                System.out.println("Usage: java SolverService [-port=n] [-workers=n] [-queue=n]" +
+                        " [-engine=backtracker|dlx|sat] [-timeout=millis (backtracker only)]");
+                return;
+            }
+        }
+        SolverService service = new SolverService(port, workers, queue, engine, timeout);
+        System.out.println("Solving on http://localhost:" + service.getPort() + "/solve");
+    }
+}